@@ -0,0 +1,67 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Bar;
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.Trade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading 1 second bars kept by the stock against grouping all trades into bars on every read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BarsBenchmark {
+
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+
+    @Param({"10000", "1000000"})
+    private int numberOfTrades;
+
+    private Stock stock;
+
+    @Setup
+    public void setUp() {
+        stock = Stocks.stockWithTrades("TEA", numberOfTrades);
+        stock.addBars(INTERVAL, 300);
+    }
+
+    @Benchmark
+    public List<Bar> getBars() {
+        return stock.getBars(INTERVAL);
+    }
+
+    @Benchmark
+    public Map<Long, BigDecimal[]> groupTrades() {
+        Map<Long, BigDecimal[]> bars = new TreeMap<>();
+        for (Trade trade : stock.getTrades()) {
+            BigDecimal[] bar = bars.computeIfAbsent(trade.getTimestamp().getEpochSecond(),
+                    second -> new BigDecimal[]{trade.getPrice(), trade.getPrice(), trade.getPrice(), trade.getPrice(), BigDecimal.ZERO});
+            if (trade.getPrice().compareTo(bar[1]) > 0) bar[1] = trade.getPrice();
+            if (trade.getPrice().compareTo(bar[2]) < 0) bar[2] = trade.getPrice();
+            bar[3] = trade.getPrice();
+            bar[4] = bar[4].add(BigDecimal.valueOf(trade.getQuantity()));
+        }
+        return bars;
+    }
+}
@@ -0,0 +1,56 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.FixedPoint;
+import com.gbce.stocks.Stock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of derived values with BigDecimal and fixed point arithmetic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DerivedValuesBenchmark {
+
+    @Param({"DECIMAL128", "FIXED_POINT"})
+    private String arithmetic;
+
+    private Stock stock;
+
+    @Setup
+    public void setUp() {
+        stock = Stocks.stockWithTrades("POP", 10_000);
+        if ("FIXED_POINT".equals(arithmetic)) stock.setFixedPoint(FixedPoint.ofScale(4));
+    }
+
+    @Benchmark
+    public BigDecimal volumeWeightedStockPrice() {
+        return stock.getVolumeWeightedStockPrice();
+    }
+
+    @Benchmark
+    public BigDecimal peRatio() {
+        return stock.getPERatio();
+    }
+
+    @Benchmark
+    public BigDecimal dividendYield() {
+        return stock.getDividendYield();
+    }
+}
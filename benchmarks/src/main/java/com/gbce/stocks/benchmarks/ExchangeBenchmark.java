@@ -0,0 +1,91 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Exchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of trades routed by the exchange to sharded workers across many symbols, against trades done directly
+ * by the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExchangeBenchmark {
+
+    private static final int TRADES_PER_INVOCATION = 1_000;
+
+    private static final BigDecimal PRICE = new BigDecimal("10.25");
+
+    @Param({"1000", "10000", "100000"})
+    private int numberOfSymbols;
+
+    private Exchange exchange;
+
+    private String[] symbols;
+
+    private final CompletableFuture<?>[] futures = new CompletableFuture<?>[TRADES_PER_INVOCATION];
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        exchange = new Exchange();
+        symbols = new String[numberOfSymbols];
+        for (int i = 0; i < numberOfSymbols; i++) {
+            symbols[i] = "S" + i;
+            exchange.addStock(Stocks.stock(symbols[i]));
+        }
+        // shuffled, so consecutive trades hit different symbols and workers
+        Random random = new Random(1);
+        for (int i = numberOfSymbols - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String symbol = symbols[i];
+            symbols[i] = symbols[j];
+            symbols[j] = symbol;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        exchange.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES_PER_INVOCATION)
+    public void routedToWorkers() {
+        for (int i = 0; i < TRADES_PER_INVOCATION; i++) futures[i] = exchange.buy(symbol(), 100, PRICE);
+        for (CompletableFuture<?> future : futures) future.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES_PER_INVOCATION)
+    public void lookedUpAndDoneByCaller() {
+        for (int i = 0; i < TRADES_PER_INVOCATION; i++) exchange.getStock(symbol()).buy(100, PRICE);
+    }
+
+    private String symbol() {
+        String symbol = symbols[next];
+        next = next + 1 == symbols.length ? 0 : next + 1;
+        return symbol;
+    }
+}
@@ -0,0 +1,118 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.ImportProgress;
+import com.gbce.stocks.RetentionPolicy;
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.Trade;
+import com.gbce.stocks.TradeBatch;
+import com.gbce.stocks.TradeCodec;
+import com.gbce.stocks.TradeImport;
+import com.gbce.stocks.TradeReplay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to import a trading day of 100 stocks from CSV and binary files, by trade count. Trades per minute are about
+ * 60,000 divided by the time in milliseconds, times the trade count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ImportBenchmark {
+
+    private static final int NUMBER_OF_STOCKS = 100;
+
+    // 8 hours
+    private static final long DAY_NANOS = 8 * 60 * 60 * 1_000_000_000L;
+
+    @Param({"1000000", "10000000"})
+    private int numberOfTrades;
+
+    private Path csv;
+
+    private Path binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = Files.createTempFile("import-benchmark", ".csv");
+        binary = Files.createTempFile("import-benchmark", ".bin");
+        Random random = new Random(1);
+        Instant open = Instant.parse("2016-01-04T08:00:00Z");
+        TradeBatch batch = new TradeBatch();
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("S99", 1));
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8);
+             OutputStream out = Files.newOutputStream(binary)) {
+            for (int i = 0; i < numberOfTrades; i++) {
+                String symbol = "S" + random.nextInt(NUMBER_OF_STOCKS);
+                Instant timestamp = open.plusNanos(i * DAY_NANOS / numberOfTrades);
+                BigDecimal price = BigDecimal.valueOf(1_000 + random.nextInt(1_000), 2);
+                int quantity = 1 + random.nextInt(100);
+                Trade.TradeIndicator indicator = random.nextBoolean() ? Trade.TradeIndicator.BUY : Trade.TradeIndicator.SELL;
+                writer.write(TradeReplay.format(symbol, new Trade(quantity, price, timestamp, indicator)));
+                writer.newLine();
+                // a batch per trade is the worst case of the binary format
+                batch.clear();
+                if (indicator == Trade.TradeIndicator.BUY) batch.buy(quantity, price, timestamp);
+                else batch.sell(quantity, price, timestamp);
+                buffer.clear();
+                TradeCodec.encode(symbol, batch, buffer);
+                out.write(buffer.array(), 0, buffer.position());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(binary);
+    }
+
+    @Benchmark
+    public long importCsv() throws IOException {
+        ImportProgress progress = new TradeImport(stocks()).importCsv(csv);
+        return progress.getTradesLoaded();
+    }
+
+    @Benchmark
+    public long importBinary() throws IOException {
+        ImportProgress progress = new TradeImport(stocks()).importBinary(binary);
+        return progress.getTradesLoaded();
+    }
+
+    private static List<Stock> stocks() {
+        List<Stock> stocks = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_STOCKS; i++) {
+            Stock stock = Stocks.stock("S" + i);
+            stock.setRetentionPolicy(RetentionPolicy.maxCount(100_000));
+            stocks.add(stock);
+        }
+        return stocks;
+    }
+}
@@ -0,0 +1,103 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.OrderBook;
+import com.gbce.stocks.RetentionPolicy;
+import com.gbce.stocks.Stock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of order book operations by depth, the number of price levels on each side with 10 orders each. Every
+ * operation leaves the book as it has found it: a match is followed by an order which replaces the liquidity taken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+
+    private static final int ORDERS_PER_LEVEL = 10;
+
+    private static final int SWEPT_LEVELS = 5;
+
+    // ticks of one cent from 100.00 up for asks and down for bids
+    private static final BigDecimal MID = new BigDecimal("100.00");
+
+    private static final BigDecimal TICK = new BigDecimal("0.01");
+
+    @Param({"10", "100", "1000"})
+    private int depth;
+
+    private OrderBook book;
+
+    private BigDecimal bestAsk;
+
+    private BigDecimal belowBestBid;
+
+    private BigDecimal sweepPrice;
+
+    private BigDecimal[] sweptPrices;
+
+    @Setup
+    public void setUp() {
+        Stock stock = Stocks.stock("TEA");
+        // keeps heap bounded however long the benchmark runs
+        stock.setRetentionPolicy(RetentionPolicy.maxCount(100_000));
+        book = new OrderBook(stock);
+        for (int level = 1; level <= depth; level++) {
+            for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+                book.sell(100, MID.add(TICK.multiply(BigDecimal.valueOf(level))));
+                book.buy(100, MID.subtract(TICK.multiply(BigDecimal.valueOf(level))));
+            }
+        }
+        bestAsk = MID.add(TICK);
+        belowBestBid = MID.subtract(TICK.multiply(BigDecimal.valueOf(depth / 2 + 1)));
+        sweepPrice = MID.add(TICK.multiply(BigDecimal.valueOf(SWEPT_LEVELS)));
+        sweptPrices = new BigDecimal[SWEPT_LEVELS];
+        for (int i = 0; i < SWEPT_LEVELS; i++) sweptPrices[i] = MID.add(TICK.multiply(BigDecimal.valueOf(i + 1)));
+    }
+
+    /**
+     * Rests an order in the middle of the bids and cancels it.
+     */
+    @Benchmark
+    public boolean placeAndCancel() {
+        return book.cancel(book.buy(100, belowBestBid));
+    }
+
+    /**
+     * Fills part of the oldest order at the best ask and replaces it at the back of the queue.
+     */
+    @Benchmark
+    public long matchTopOfBook() {
+        book.buy(100, bestAsk);
+        return book.sell(100, bestAsk);
+    }
+
+    /**
+     * Takes all orders of the best levels and replaces them.
+     */
+    @Benchmark
+    public long sweepLevels() {
+        book.buy(100 * ORDERS_PER_LEVEL * SWEPT_LEVELS, sweepPrice);
+        long id = 0;
+        for (BigDecimal price : sweptPrices) {
+            for (int i = 0; i < ORDERS_PER_LEVEL; i++) id = book.sell(100, price);
+        }
+        return id;
+    }
+}
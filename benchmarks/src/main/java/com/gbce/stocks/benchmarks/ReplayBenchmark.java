@@ -0,0 +1,93 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.ReplayClock;
+import com.gbce.stocks.RetentionPolicy;
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.StockIndex;
+import com.gbce.stocks.Trade;
+import com.gbce.stocks.TradeReplay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to replay a recorded trading day of 10 stocks, with the index calculated after every trade, by trade count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final int NUMBER_OF_STOCKS = 10;
+
+    // 8 hours
+    private static final long DAY_MILLIS = 8 * 60 * 60 * 1000;
+
+    @Param({"100000", "1000000"})
+    private int numberOfTrades;
+
+    private Path recording;
+
+    @Setup
+    public void setUp() throws IOException {
+        recording = Files.createTempFile("replay-benchmark", ".csv");
+        Random random = new Random(1);
+        Instant open = Instant.parse("2016-01-04T08:00:00Z");
+        try (BufferedWriter writer = Files.newBufferedWriter(recording, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < numberOfTrades; i++) {
+                Instant timestamp = open.plusMillis(i * DAY_MILLIS / numberOfTrades);
+                BigDecimal price = BigDecimal.valueOf(1_000 + random.nextInt(1_000), 2);
+                Trade.TradeIndicator indicator = random.nextBoolean() ? Trade.TradeIndicator.BUY : Trade.TradeIndicator.SELL;
+                writer.write(timestamp + ",S" + random.nextInt(NUMBER_OF_STOCKS) + "," + indicator + ","
+                        + (1 + random.nextInt(100)) + "," + price);
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(recording);
+    }
+
+    @Benchmark
+    public double replayDay() throws IOException {
+        ReplayClock clock = new ReplayClock(Instant.EPOCH);
+        List<Stock> stocks = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_STOCKS; i++) {
+            Stock stock = Stocks.stock("S" + i);
+            stock.setClock(clock);
+            stock.setRetentionPolicy(RetentionPolicy.maxCount(100_000));
+            stocks.add(stock);
+        }
+        StockIndex index = new StockIndex("GBCE", new HashSet<>(stocks));
+        index.setClock(clock);
+        new TradeReplay(stocks, clock).replay(recording, stock -> index.calculate());
+        return index.calculate();
+    }
+}
@@ -0,0 +1,82 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.StockIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a trade followed by calculation of every index, for overlapping sector indices over the same stocks,
+ * by number of indices, and of moving a stock between indices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SectorIndicesBenchmark {
+
+    private static final int NUMBER_OF_STOCKS = 100;
+
+    private static final int TRADES_PER_STOCK = 1_000;
+
+    private static final int STOCKS_PER_INDEX = 30;
+
+    @Param({"1", "10", "50"})
+    private int numberOfIndices;
+
+    private Stock[] stocks;
+
+    private StockIndex[] indices;
+
+    private final Random random = new Random(1);
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        stocks = new Stock[NUMBER_OF_STOCKS];
+        for (int i = 0; i < NUMBER_OF_STOCKS; i++) stocks[i] = Stocks.stockWithTrades("S" + i, TRADES_PER_STOCK);
+        indices = new StockIndex[numberOfIndices];
+        for (int i = 0; i < numberOfIndices; i++) {
+            Set<Stock> constituents = new HashSet<>();
+            // every index holds the first stock, so a trade of it changes all of them
+            constituents.add(stocks[0]);
+            while (constituents.size() < STOCKS_PER_INDEX) constituents.add(stocks[random.nextInt(NUMBER_OF_STOCKS)]);
+            indices[i] = new StockIndex("Sector " + i, constituents);
+            indices[i].calculate();
+        }
+    }
+
+    @Benchmark
+    public double tradeAndCalculateAll() {
+        stocks[0].buy(1 + random.nextInt(100), BigDecimal.valueOf(1_000 + random.nextInt(1_000), 2));
+        double sum = 0;
+        for (StockIndex index : indices) sum += index.calculate();
+        return sum;
+    }
+
+    @Benchmark
+    public double moveStock() {
+        Stock stock = stocks[1 + next++ % (NUMBER_OF_STOCKS - 1)];
+        StockIndex index = indices[next % numberOfIndices];
+        if (!index.removeStock(stock)) index.addStock(stock);
+        return index.calculate();
+    }
+}
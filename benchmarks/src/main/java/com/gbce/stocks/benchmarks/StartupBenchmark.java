@@ -0,0 +1,104 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.SyncPolicy;
+import com.gbce.stocks.TradeBatch;
+import com.gbce.stocks.TradeJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to restart a stock by trade count: replaying the whole journal against restoring the latest snapshot and
+ * replaying only the journal tail written after it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final int TAIL = 1_000;
+
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int numberOfTrades;
+
+    private Path directory;
+
+    private Path journalPath;
+
+    private Path snapshotPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("startup-benchmark");
+        journalPath = directory.resolve("TEA.journal");
+        snapshotPath = directory.resolve("TEA.snapshot");
+        Stock stock = Stocks.stock("TEA");
+        Random random = new Random(1);
+        TradeBatch batch = new TradeBatch();
+        Instant timestamp = Instant.now().minusSeconds(numberOfTrades / 1_000);
+        try (TradeJournal journal = TradeJournal.open(journalPath, SyncPolicy.periodic(Duration.ofSeconds(1)))) {
+            stock.setTradeJournal(journal);
+            for (int i = 0; i < numberOfTrades; i++) {
+                BigDecimal price = BigDecimal.valueOf(1_000 + random.nextInt(1_000), 2);
+                timestamp = timestamp.plusMillis(1);
+                if (random.nextBoolean()) batch.buy(1 + random.nextInt(100), price, timestamp);
+                else batch.sell(1 + random.nextInt(100), price, timestamp);
+                if (batch.size() == BATCH_SIZE || i == numberOfTrades - 1) {
+                    stock.tradeBatch(batch);
+                    batch.clear();
+                }
+                if (i == numberOfTrades - TAIL - 1) stock.writeSnapshot(snapshotPath);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(journalPath);
+        Files.deleteIfExists(snapshotPath);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Stock replayJournal() throws IOException {
+        Stock stock = Stocks.stock("TEA");
+        try (TradeJournal journal = TradeJournal.open(journalPath, SyncPolicy.perBatch())) {
+            stock.setTradeJournal(journal);
+        }
+        return stock;
+    }
+
+    @Benchmark
+    public Stock restoreSnapshotAndReplayTail() throws IOException {
+        Stock stock = Stocks.stock("TEA");
+        stock.restoreSnapshot(snapshotPath);
+        try (TradeJournal journal = TradeJournal.open(journalPath, SyncPolicy.perBatch())) {
+            stock.setTradeJournal(journal);
+        }
+        return stock;
+    }
+}
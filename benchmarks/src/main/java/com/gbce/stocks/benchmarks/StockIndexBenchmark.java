@@ -0,0 +1,52 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.StockIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of index calculation for different numbers of constituents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockIndexBenchmark {
+
+    private static final int TRADES_PER_STOCK = 100;
+
+    @Param({"5", "100", "1000", "10000"})
+    private int numberOfConstituents;
+
+    private StockIndex stockIndex;
+
+    @Setup
+    public void setUp() {
+        Set<Stock> stocks = new HashSet<>();
+        for (int i = 0; i < numberOfConstituents; i++) {
+            stocks.add(Stocks.stockWithTrades("S" + i, TRADES_PER_STOCK));
+        }
+        stockIndex = new StockIndex("GBCE All Share", stocks);
+    }
+
+    @Benchmark
+    public double calculate() {
+        return stockIndex.calculate();
+    }
+}
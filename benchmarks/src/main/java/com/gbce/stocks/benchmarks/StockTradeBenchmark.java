@@ -0,0 +1,129 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Metrics;
+import com.gbce.stocks.RetentionPolicy;
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.TradeBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of buy and sell on a single stock at several thread counts, and of the same trades done in batches.
+ * The cases with metrics show the cost of recording them, to be compared with the same cases without.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockTradeBenchmark {
+
+    private static final BigDecimal BUY_PRICE = new BigDecimal("10.25");
+
+    private static final BigDecimal SELL_PRICE = new BigDecimal("10.20");
+
+    private static final int BATCH_SIZE = 100;
+
+    private Stock stock;
+
+    @Setup
+    public void setUp() {
+        stock = Stocks.stock("TEA");
+        // keeps heap bounded however long the benchmark runs
+        stock.setRetentionPolicy(RetentionPolicy.maxCount(1_000_000));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void buyAndSellWith1Thread() {
+        trade();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void buyAndSellWith2Threads() {
+        trade();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void buyAndSellWith4Threads() {
+        trade();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void buyAndSellWith8Threads() {
+        trade();
+    }
+
+    /**
+     * Does {@code BATCH_SIZE} buy and sell pairs in a batch, to be compared with the same number of single trades.
+     */
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void buyAndSellInBatchWith1Thread(Batch batch) {
+        TradeBatch trades = batch.trades;
+        trades.clear();
+        Instant now = Instant.now();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            trades.buy(100, BUY_PRICE, now);
+            trades.sell(100, SELL_PRICE, now);
+        }
+        stock.tradeBatch(trades);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void buyAndSellWith1ThreadAndMetrics(MetricsEnabled metrics) {
+        trade();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void buyAndSellWith4ThreadsAndMetrics(MetricsEnabled metrics) {
+        trade();
+    }
+
+    @State(Scope.Benchmark)
+    public static class MetricsEnabled {
+
+        @Setup
+        public void enable() {
+            Metrics.setEnabled(true);
+        }
+
+        @TearDown
+        public void disable() {
+            Metrics.setEnabled(false);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        final TradeBatch trades = new TradeBatch();
+    }
+
+    private void trade() {
+        stock.buy(100, BUY_PRICE);
+        stock.sell(100, SELL_PRICE);
+    }
+}
@@ -0,0 +1,41 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.StockCommon;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Benchmark fixtures.
+ */
+final class Stocks {
+
+    private Stocks() {
+    }
+
+    static Stock stock(String symbol) {
+        return new StockCommon(symbol, 100, 8);
+    }
+
+    /**
+     * Creates a stock with the given number of trades, all done within the last 5 minutes.
+     */
+    static Stock stockWithTrades(String symbol, int numberOfTrades) {
+        Stock stock = stock(symbol);
+        trade(stock, numberOfTrades);
+        return stock;
+    }
+
+    /**
+     * Does the given number of random trades.
+     */
+    static void trade(Stock stock, int numberOfTrades) {
+        Random random = new Random(1);
+        for (int i = 0; i < numberOfTrades; i++) {
+            BigDecimal price = BigDecimal.valueOf(1_000 + random.nextInt(1_000), 2);
+            if (random.nextBoolean()) stock.buy(1 + random.nextInt(100), price);
+            else stock.sell(1 + random.nextInt(100), price);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.Trade;
+import com.gbce.stocks.TradeBatch;
+import com.gbce.stocks.TradeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to encode and decode the trades of a stock with the binary codec, to heap and direct buffers, and with Java
+ * serialization of the same fields, by trade count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradeCodecBenchmark {
+
+    @Param({"1000", "100000"})
+    private int numberOfTrades;
+
+    @Param({"heap", "direct"})
+    private String buffer;
+
+    private Stock stock;
+
+    private ArrayList<Trade> trades;
+
+    private ByteBuffer encoded;
+
+    private ByteBuffer output;
+
+    private TradeBatch batch;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        stock = Stocks.stockWithTrades("TEA", numberOfTrades);
+        trades = new ArrayList<>(stock.getTrades());
+        int size = TradeCodec.batchSize("TEA", numberOfTrades);
+        encoded = "direct".equals(buffer) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        output = "direct".equals(buffer) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        TradeCodec.encode(stock, 0, encoded);
+        encoded.flip();
+        batch = new TradeBatch();
+        serialized = serialize();
+    }
+
+    @Benchmark
+    public long encodeStock() {
+        output.clear();
+        return TradeCodec.encode(stock, 0, output);
+    }
+
+    @Benchmark
+    public int encodeTrades() {
+        output.clear();
+        for (Trade trade : trades) TradeCodec.encode(trade, output);
+        return output.position();
+    }
+
+    @Benchmark
+    public int decodeBatch() {
+        batch.clear();
+        TradeCodec.decode(encoded.duplicate(), batch);
+        return batch.size();
+    }
+
+    @Benchmark
+    public List<Trade> decodeTrades() {
+        ByteBuffer input = encoded.duplicate();
+        input.position(TradeCodec.batchSize("TEA", 0));
+        List<Trade> decoded = new ArrayList<>(numberOfTrades);
+        while (input.hasRemaining()) decoded.add(TradeCodec.decode(input));
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ArrayList<SerializedTrade> serializedTrades = new ArrayList<>(trades.size());
+        for (Trade trade : trades) serializedTrades.add(new SerializedTrade(trade));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(serializedTrades);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Trade> deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            List<SerializedTrade> serializedTrades = (List<SerializedTrade>) in.readObject();
+            List<Trade> decoded = new ArrayList<>(serializedTrades.size());
+            for (SerializedTrade trade : serializedTrades) decoded.add(trade.toTrade());
+            return decoded;
+        }
+    }
+
+    /**
+     * Fields of a trade, as trades themselves are not serializable.
+     */
+    private static final class SerializedTrade implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long quantity;
+
+        private final BigDecimal price;
+
+        private final Instant timestamp;
+
+        private final Trade.TradeIndicator indicator;
+
+        SerializedTrade(Trade trade) {
+            quantity = trade.getQuantity();
+            price = trade.getPrice();
+            timestamp = trade.getTimestamp();
+            indicator = trade.getIndicator();
+        }
+
+        Trade toTrade() {
+            return new Trade(quantity, price, timestamp, indicator);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.Trade;
+import com.gbce.stocks.TradeCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cost of reading trade history, copying it with getTrades() against paging through views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradesBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"100", "10000", "1000000"})
+    private int numberOfTrades;
+
+    private Stock stock;
+
+    @Setup
+    public void setUp() {
+        stock = Stocks.stockWithTrades("TEA", numberOfTrades);
+    }
+
+    @Benchmark
+    public List<Trade> getTrades() {
+        return stock.getTrades();
+    }
+
+    @Benchmark
+    public Trade pageWithCursor() {
+        TradeCursor cursor = stock.getTradeCursor();
+        Trade trade = null;
+        for (int i = 0; i < PAGE_SIZE && cursor.hasNext(); i++) trade = cursor.next();
+        return trade;
+    }
+
+    @Benchmark
+    public long streamWithSpliterator() {
+        return StreamSupport.stream(stock.getTradeSpliterator(), false).mapToLong(Trade::getQuantity).sum();
+    }
+
+    @Benchmark
+    public Trade getLastTrade() {
+        return stock.getLastTrade();
+    }
+}
@@ -0,0 +1,96 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.RetentionPolicy;
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.StockIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for a number of concurrent clients, each with a thread of its own, to wait for a simulated network round trip,
+ * trade and read the last trade, the volume weighted stock price and the index, with platform threads against
+ * virtual threads. Virtual threads need Java 21 or later, they are created by reflection so the benchmarks still
+ * build for Java 1.8, and on an older Java the virtual cases fail in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    private static final int NUMBER_OF_STOCKS = 10;
+
+    private static final BigDecimal PRICE = new BigDecimal("10.25");
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"1000", "10000"})
+    private int numberOfClients;
+
+    // round trip each client waits for before trading
+    @Param({"1"})
+    private int latencyMillis;
+
+    private Stock[] stocks;
+
+    private StockIndex index;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        // fails early when virtual threads are not available
+        newExecutor().shutdown();
+        stocks = new Stock[NUMBER_OF_STOCKS];
+        Set<Stock> constituents = new HashSet<>();
+        for (int i = 0; i < NUMBER_OF_STOCKS; i++) {
+            stocks[i] = Stocks.stock("S" + i);
+            stocks[i].setRetentionPolicy(RetentionPolicy.maxCount(100_000));
+            constituents.add(stocks[i]);
+        }
+        index = new StockIndex("GBCE", constituents);
+    }
+
+    @Benchmark
+    public double clients() throws Exception {
+        ExecutorService executor = newExecutor();
+        Future<?>[] clients = new Future<?>[numberOfClients];
+        for (int i = 0; i < numberOfClients; i++) {
+            Stock stock = stocks[i % NUMBER_OF_STOCKS];
+            clients[i] = executor.submit(() -> {
+                Thread.sleep(latencyMillis);
+                stock.buy(100, PRICE);
+                stock.getLastTrade();
+                stock.getVolumeWeightedStockPrice();
+                return index.calculate();
+            });
+        }
+        double value = 0;
+        for (Future<?> client : clients) value += (Double) client.get();
+        executor.shutdown();
+        return value;
+    }
+
+    private ExecutorService newExecutor() throws ReflectiveOperationException {
+        if (threads.equals("platform")) return Executors.newCachedThreadPool();
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.gbce.stocks.benchmarks;
+
+import com.gbce.stocks.IntervalStatistics;
+import com.gbce.stocks.Stock;
+import com.gbce.stocks.WindowStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of volume weighted stock price for different numbers of trades in the window, and of statistics of named
+ * windows of 1, 5, 15 and 60 minutes, which all cover the trades, and of statistics of random intervals of the trades.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VolumeWeightedStockPriceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int windowSize;
+
+    private Stock stock;
+
+    private Instant since;
+
+    private static final int INTERVALS = 1_024;
+
+    private final Instant[] froms = new Instant[INTERVALS];
+
+    private final Instant[] tos = new Instant[INTERVALS];
+
+    private int interval;
+
+    @Setup
+    public void setUp() {
+        since = Instant.now();
+        stock = Stocks.stock("TEA");
+        stock.addWindow("1m", Duration.ofMinutes(1));
+        stock.addWindow("5m", Duration.ofMinutes(5));
+        stock.addWindow("15m", Duration.ofMinutes(15));
+        stock.addWindow("1h", Duration.ofHours(1));
+        Stocks.trade(stock, windowSize);
+        long range = Duration.between(since, stock.getLastTrade().getTimestamp()).toNanos() + 1;
+        Random random = new Random(1);
+        for (int i = 0; i < INTERVALS; i++) {
+            long from = (long) (random.nextDouble() * range);
+            froms[i] = since.plusNanos(from);
+            tos[i] = since.plusNanos(from + (long) (random.nextDouble() * (range - from)));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal lastFiveMinutes() {
+        return stock.getVolumeWeightedStockPrice();
+    }
+
+    @Benchmark
+    public BigDecimal sinceTimestamp() {
+        return stock.getVolumeWeightedStockPrice(since);
+    }
+
+    @Benchmark
+    public WindowStatistics namedWindow() {
+        return stock.getWindow("1h");
+    }
+
+    @Benchmark
+    public List<WindowStatistics> allNamedWindows() {
+        return stock.getWindows();
+    }
+
+    @Benchmark
+    public IntervalStatistics randomInterval() {
+        int i = interval++ & (INTERVALS - 1);
+        return stock.getStatistics(froms[i], tos[i]);
+    }
+}
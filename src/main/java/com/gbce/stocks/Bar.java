@@ -0,0 +1,68 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Open, high, low, close, volume and volume weighted price of trades of a stock done in a time interval.
+ */
+public final class Bar {
+
+    private final Instant start;
+
+    private final Instant end;
+
+    private final BigDecimal open;
+
+    private final BigDecimal high;
+
+    private final BigDecimal low;
+
+    private final BigDecimal close;
+
+    private final long volume;
+
+    private final BigDecimal volumeWeightedPrice;
+
+    private final int numberOfTrades;
+
+    Bar(Instant start, Instant end, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, long volume,
+        BigDecimal volumeWeightedPrice, int numberOfTrades) {
+        this.start = start;
+        this.end = end;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.volumeWeightedPrice = volumeWeightedPrice;
+        this.numberOfTrades = numberOfTrades;
+    }
+
+    /**
+     * @return start of the interval, inclusive
+     */
+    public Instant getStart() { return start; }
+
+    /**
+     * @return end of the interval, exclusive
+     */
+    public Instant getEnd() { return end; }
+
+    public BigDecimal getOpen() { return open; }
+
+    public BigDecimal getHigh() { return high; }
+
+    public BigDecimal getLow() { return low; }
+
+    /**
+     * @return price of the last trade so far when the interval has not ended yet
+     */
+    public BigDecimal getClose() { return close; }
+
+    public long getVolume() { return volume; }
+
+    public BigDecimal getVolumeWeightedPrice() { return volumeWeightedPrice; }
+
+    public int getNumberOfTrades() { return numberOfTrades; }
+}
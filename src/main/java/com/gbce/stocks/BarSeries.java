@@ -0,0 +1,165 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Bars of a fixed interval kept in a ring of primitive columns, updated incrementally as trades are added.
+ * <p>
+ * Intervals are aligned to the epoch and only intervals in which trades have been done get a bar, the ring keeps the
+ * most recent ones. Trades must be added in the order of time, so only the newest bar changes. There is a single
+ * writer, readers copy bars with an optimistic read and only lock when the writer has changed bars meanwhile.
+ */
+final class BarSeries {
+
+    // nanos
+    final long interval;
+
+    private final int capacity;
+
+    private final long[] starts;
+
+    // fixed point prices with TradeStore.PRICE_SCALE and scales the prices have been traded with
+    private final long[] opens;
+    private final byte[] openScales;
+    private final long[] highs;
+    private final byte[] highScales;
+    private final long[] lows;
+    private final byte[] lowScales;
+    private final long[] closes;
+    private final byte[] closeScales;
+
+    private final long[] volumes;
+
+    // price x quantity as 128-bit values
+    private final long[] notionalHighs;
+    private final long[] notionalLows;
+
+    private final int[] numbersOfTrades;
+
+    // number of bars ever started, the newest bar is at (count - 1) % capacity
+    private long count;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final WideSum notional = new WideSum();
+
+    BarSeries(long interval, int capacity) {
+        this.interval = interval;
+        this.capacity = capacity;
+        starts = new long[capacity];
+        opens = new long[capacity];
+        openScales = new byte[capacity];
+        highs = new long[capacity];
+        highScales = new byte[capacity];
+        lows = new long[capacity];
+        lowScales = new byte[capacity];
+        closes = new long[capacity];
+        closeScales = new byte[capacity];
+        volumes = new long[capacity];
+        notionalHighs = new long[capacity];
+        notionalLows = new long[capacity];
+        numbersOfTrades = new int[capacity];
+    }
+
+    /**
+     * Adds trades of the view in the range, it must be called by a single writer at a time.
+     */
+    void add(TradeStore.View view, long from, long to) {
+        if (from >= to) return;
+        long stamp = lock.writeLock();
+        try {
+            for (long sequence = from; sequence < to; sequence++) {
+                add(view.timestamp(sequence), view.quantity(sequence), view.price(sequence), view.scale(sequence));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void add(long timestamp, long quantity, long price, byte scale) {
+        long start = Math.floorDiv(timestamp, interval) * interval;
+        int i = (int) ((count - 1) % capacity);
+        if (count == 0 || start != starts[i]) {
+            i = (int) (count++ % capacity);
+            starts[i] = start;
+            opens[i] = price;
+            openScales[i] = scale;
+            highs[i] = price;
+            highScales[i] = scale;
+            lows[i] = price;
+            lowScales[i] = scale;
+            volumes[i] = 0;
+            notionalHighs[i] = 0;
+            notionalLows[i] = 0;
+            numbersOfTrades[i] = 0;
+        } else if (price > highs[i]) {
+            highs[i] = price;
+            highScales[i] = scale;
+        } else if (price < lows[i]) {
+            lows[i] = price;
+            lowScales[i] = scale;
+        }
+        closes[i] = price;
+        closeScales[i] = scale;
+        volumes[i] += quantity;
+        notional.clear();
+        notional.add(notionalHighs[i], notionalLows[i]);
+        notional.addProduct(price, quantity);
+        notionalHighs[i] = notional.high();
+        notionalLows[i] = notional.low();
+        numbersOfTrades[i]++;
+    }
+
+    /**
+     * Returns bars, oldest first.
+     *
+     * @param fixedPoint arithmetic of volume weighted prices, null for BigDecimal
+     */
+    List<Bar> bars(FixedPoint fixedPoint) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            List<Bar> bars = copy(fixedPoint);
+            if (lock.validate(stamp)) return bars;
+        }
+        stamp = lock.readLock();
+        try {
+            return copy(fixedPoint);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies bars, values can be inconsistent when it is not called with lock held, but it does not fail then.
+     */
+    private List<Bar> copy(FixedPoint fixedPoint) {
+        long count = this.count;
+        int size = (int) Math.min(count, capacity);
+        List<Bar> bars = new ArrayList<>(size);
+        for (long n = count - size; n < count; n++) {
+            int i = (int) (n % capacity);
+            long volume = volumes[i];
+            BigDecimal volumeWeightedPrice = null;
+            if (volume > 0) {
+                volumeWeightedPrice = fixedPoint != null
+                        ? fixedPoint.divide(notionalHighs[i], notionalLows[i], TradeStore.PRICE_SCALE, volume)
+                        : new BigDecimal(WideSum.toBigInteger(notionalHighs[i], notionalLows[i]), TradeStore.PRICE_SCALE)
+                        .divide(BigDecimal.valueOf(volume), MathContext.DECIMAL128);
+            }
+            bars.add(new Bar(TradeStore.toInstant(starts[i]), TradeStore.toInstant(starts[i] + interval),
+                    price(opens[i], openScales[i]), price(highs[i], highScales[i]), price(lows[i], lowScales[i]),
+                    price(closes[i], closeScales[i]), volume, volumeWeightedPrice, numbersOfTrades[i]));
+        }
+        return Collections.unmodifiableList(bars);
+    }
+
+    private static BigDecimal price(long price, byte scale) {
+        return BigDecimal.valueOf(price, TradeStore.PRICE_SCALE).setScale(scale, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,137 @@
+package com.gbce.stocks;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Subscription delivering updates on an executor as long as there is demand.
+ * <p>
+ * Publishers only signal that something has changed, which is cheap and never blocks. An update is built when it
+ * is delivered, from everything which has changed since the previous one, so a slow subscriber gets fewer, bigger
+ * updates with the latest values rather than a growing backlog.
+ * <p>
+ * Completion and failures are delivered by the same loop as updates, after the update being delivered if any, so
+ * the subscriber is signalled one at a time.
+ *
+ * @param <T> type of updates
+ */
+abstract class ConflatingSubscription<T> implements Subscription, Runnable {
+
+    private final Subscriber<? super T> subscriber;
+
+    private final Executor executor;
+
+    private final AtomicLong demand = new AtomicLong();
+
+    // number of signals not yet seen by the delivery loop, the loop runs when it is more than 0
+    private final AtomicInteger work = new AtomicInteger();
+
+    private static final Object COMPLETE = new Object();
+
+    private volatile boolean cancelled;
+
+    // COMPLETE or cause of the failure, to be delivered by the delivery loop
+    private final AtomicReference<Object> terminal = new AtomicReference<>();
+
+    // read and written by the delivery loop only
+    private boolean terminated;
+
+    ConflatingSubscription(Subscriber<? super T> subscriber, Executor executor) {
+        this.subscriber = Objects.requireNonNull(subscriber);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Builds an update of everything which has changed since the previous one.
+     *
+     * @return update or null if nothing has changed
+     */
+    abstract T poll();
+
+    /**
+     * Called once when cancelled, so the publisher stops signalling.
+     */
+    abstract void onCancel();
+
+    void start() {
+        subscriber.onSubscribe(this);
+    }
+
+    /**
+     * Signals that something has changed.
+     */
+    void signal() {
+        if (work.getAndIncrement() == 0) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // the delivery loop is not running, so the failure is delivered on this thread
+                if (!cancelled && terminal.compareAndSet(null, e)) cancel();
+                run();
+            }
+        }
+    }
+
+    /**
+     * Completes the subscription, e.g. when the publisher is closed, no more updates are delivered.
+     */
+    void complete() {
+        terminate(COMPLETE);
+    }
+
+    @Override
+    public void run() {
+        int missed = 1;
+        do {
+            try {
+                while (!cancelled && demand.get() > 0) {
+                    T update = poll();
+                    if (update == null) break;
+                    if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                    subscriber.onNext(update);
+                }
+            } catch (RuntimeException e) {
+                terminate(e);
+            }
+            Object signal = terminal.get();
+            if (signal != null && !terminated) {
+                terminated = true;
+                if (signal == COMPLETE) subscriber.onComplete();
+                else subscriber.onError((Throwable) signal);
+            }
+            missed = work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            terminate(new IllegalArgumentException("Number of requested updates must be more than 0"));
+            return;
+        }
+        demand.accumulateAndGet(n, (current, requested) -> current + requested < 0 ? Long.MAX_VALUE : current + requested);
+        signal();
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            onCancel();
+        }
+    }
+
+    /**
+     * Stops updates and has the delivery loop signal completion or failure, unless the subscriber has cancelled.
+     */
+    private void terminate(Object signal) {
+        if (!cancelled && terminal.compareAndSet(null, signal)) {
+            cancel();
+            signal();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange keeping stocks by symbol and routing trades to them.
+ * <p>
+ * Symbols are sharded across a fixed number of workers, each with a single thread, so trades of a stock are done one
+ * after another by the same thread, in the order they have been submitted, and the stock is never contended, while
+ * trades of different stocks are done in parallel.
+ */
+public final class Exchange implements AutoCloseable {
+
+    private final ConcurrentMap<String, Stock> stocks = new ConcurrentHashMap<>();
+
+    private final ExecutorService[] workers;
+
+    /**
+     * Creates exchange with a worker per available processor.
+     */
+    public Exchange() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates exchange.
+     *
+     * @param numberOfWorkers number of workers must be more than 0 otherwise exception is thrown
+     */
+    public Exchange(int numberOfWorkers) {
+        if (numberOfWorkers <= 0) throw new IllegalArgumentException("Number of workers must be more than 0");
+        this.workers = new ExecutorService[numberOfWorkers];
+        for (int i = 0; i < numberOfWorkers; i++) {
+            String name = "exchange-worker-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Lists stock on this exchange.
+     *
+     * @param stock stock must be specified and its symbol must not be listed yet otherwise exception is thrown
+     */
+    public void addStock(Stock stock) {
+        Objects.requireNonNull(stock);
+        if (stocks.putIfAbsent(stock.getStockSymbol(), stock) != null) {
+            throw new IllegalArgumentException("Stock " + stock.getStockSymbol() + " is already listed");
+        }
+    }
+
+    /**
+     * Returns stock by symbol.
+     *
+     * @param stockSymbol stock symbol must be specified otherwise exception is thrown
+     * @return stock or null if there is no stock with the symbol
+     */
+    public Stock getStock(String stockSymbol) {
+        return stocks.get(Objects.requireNonNull(stockSymbol));
+    }
+
+    /**
+     * Returns stocks listed on this exchange.
+     *
+     * @return unmodifiable view of stocks
+     */
+    public Collection<Stock> getStocks() {
+        return Collections.unmodifiableCollection(stocks.values());
+    }
+
+    /**
+     * Buys a number of shares of a stock at given price, the trade is done by the worker of the stock.
+     *
+     * @param stockSymbol symbol of a listed stock otherwise exception is thrown
+     * @param quantity number of shares to buy
+     * @param price price, it cannot have more than 8 decimal places
+     * @return future completed when the trade has been done
+     */
+    public CompletableFuture<Void> buy(String stockSymbol, int quantity, BigDecimal price) {
+        return trade(stockSymbol, quantity, price, Trade.TradeIndicator.BUY);
+    }
+
+    /**
+     * Sells a number of shares of a stock at given price, the trade is done by the worker of the stock.
+     *
+     * @param stockSymbol symbol of a listed stock otherwise exception is thrown
+     * @param quantity number of shares to sell
+     * @param price price, it cannot have more than 8 decimal places
+     * @return future completed when the trade has been done
+     */
+    public CompletableFuture<Void> sell(String stockSymbol, int quantity, BigDecimal price) {
+        return trade(stockSymbol, quantity, price, Trade.TradeIndicator.SELL);
+    }
+
+    private CompletableFuture<Void> trade(String stockSymbol, int quantity, BigDecimal price, Trade.TradeIndicator indicator) {
+        Stock stock = getStock(stockSymbol);
+        if (stock == null) throw new IllegalArgumentException("Stock " + stockSymbol + " is not listed");
+        // bad trades are rejected to the caller rather than failing on the worker
+        Trade.validate(quantity, price);
+        TradeStore.toFixedPoint(price);
+        return CompletableFuture.runAsync(() -> {
+            if (indicator == Trade.TradeIndicator.BUY) stock.buy(quantity, price);
+            else stock.sell(quantity, price);
+        }, worker(stockSymbol));
+    }
+
+    private ExecutorService worker(String stockSymbol) {
+        int hash = stockSymbol.hashCode();
+        return workers[Math.floorMod(hash ^ (hash >>> 16), workers.length)];
+    }
+
+    /**
+     * Stops workers after trades which have been submitted are done.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService worker : workers) worker.shutdown();
+        try {
+            for (ExecutorService worker : workers) worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
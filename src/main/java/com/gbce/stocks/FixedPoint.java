@@ -0,0 +1,140 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed point arithmetic mode for derived values of a stock (volume weighted stock price, PE ratio, dividend yield).
+ * <p>
+ * Values are calculated with 64-bit and 128-bit integer arithmetic on prices stored with 8 decimal places, without
+ * allocation, and converted to {@link BigDecimal} with the chosen scale only when returned.
+ * <p>
+ * Rounding: a result is the exact quotient rounded half even to the scale, i.e. it is equal to
+ * {@code BigDecimal.divide(divisor, scale, RoundingMode.HALF_EVEN)} on exact operands.
+ * <p>
+ * Overflow: results never overflow silently. When an intermediate value does not fit (the numerator in 128 bits,
+ * the divisor or the quotient in 63 bits) the value is calculated with {@link BigDecimal} instead, with the same
+ * rounding, so only speed is affected.
+ */
+public final class FixedPoint {
+
+    /**
+     * Maximum scale, the scale prices are stored with.
+     */
+    public static final int MAX_SCALE = TradeStore.PRICE_SCALE;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private final int scale;
+
+    private FixedPoint(int scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * Fixed point arithmetic with the given number of decimal places.
+     *
+     * @param scale scale must be between 0 and {@link #MAX_SCALE} otherwise exception is thrown
+     * @return fixed point arithmetic mode
+     */
+    public static FixedPoint ofScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) throw new IllegalArgumentException("Scale must be between 0 and " + MAX_SCALE);
+        return new FixedPoint(scale);
+    }
+
+    /**
+     * Fixed point arithmetic in whole pennies, stock prices are quoted in pennies.
+     *
+     * @return fixed point arithmetic mode with scale 0
+     */
+    public static FixedPoint pennies() {
+        return ofScale(0);
+    }
+
+    /**
+     * Returns number of decimal places of values.
+     *
+     * @return scale
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Divides a non-negative 128-bit fixed point numerator by a positive divisor.
+     *
+     * @param high high 64 bits of the unscaled numerator
+     * @param low low 64 bits of the unscaled numerator
+     * @param numeratorScale scale of the numerator, it can be negative
+     * @param divisor divisor
+     * @return quotient with the scale of this mode
+     */
+    BigDecimal divide(long high, long low, int numeratorScale, long divisor) {
+        int up = scale - numeratorScale;
+        if (up <= 0 || high == 0 && low >= 0 && up < POWERS_OF_TEN.length) {
+            long quotient = unscaledQuotient(high, low, up, divisor);
+            if (quotient >= 0) return BigDecimal.valueOf(quotient, scale);
+        }
+        return new BigDecimal(WideSum.toBigInteger(high, low), numeratorScale)
+                .divide(BigDecimal.valueOf(divisor), scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * @return unscaled quotient or -1 if it cannot be calculated without overflow
+     */
+    private static long unscaledQuotient(long high, long low, int up, long divisor) {
+        if (up > 0) {
+            high = WideSum.multiplyHigh(low, POWERS_OF_TEN[up]);
+            low *= POWERS_OF_TEN[up];
+        } else if (up < 0) {
+            if (-up >= POWERS_OF_TEN.length || divisor > Long.MAX_VALUE / POWERS_OF_TEN[-up]) return -1;
+            divisor *= POWERS_OF_TEN[-up];
+        }
+        if (Long.compareUnsigned(high, divisor) >= 0) return -1;
+        long quotient = divideUnsigned(high, low, divisor);
+        long remainder = low - quotient * divisor;
+        if (Long.compareUnsigned(remainder, divisor - remainder) > 0
+                || remainder == divisor - remainder && (quotient & 1) == 1) quotient++;
+        return quotient;
+    }
+
+    /**
+     * Unsigned division of a 128-bit value by a 64-bit value, the high 64 bits must be less than the divisor.
+     * It is the long division from Hacker's Delight (divlu) with 32-bit digits.
+     */
+    static long divideUnsigned(long high, long low, long divisor) {
+        final long base = 1L << 32;
+        int shift = Long.numberOfLeadingZeros(divisor);
+        divisor <<= shift;
+        long divisorHigh = divisor >>> 32;
+        long divisorLow = divisor & 0xFFFFFFFFL;
+        long numerator32 = shift == 0 ? high : high << shift | low >>> (64 - shift);
+        long numerator10 = low << shift;
+        long numerator1 = numerator10 >>> 32;
+        long numerator0 = numerator10 & 0xFFFFFFFFL;
+
+        long quotient1 = Long.divideUnsigned(numerator32, divisorHigh);
+        long remainder = numerator32 - quotient1 * divisorHigh;
+        while (Long.compareUnsigned(quotient1, base) >= 0
+                || Long.compareUnsigned(quotient1 * divisorLow, remainder * base + numerator1) > 0) {
+            quotient1--;
+            remainder += divisorHigh;
+            if (Long.compareUnsigned(remainder, base) >= 0) break;
+        }
+
+        long numerator21 = numerator32 * base + numerator1 - quotient1 * divisor;
+        long quotient0 = Long.divideUnsigned(numerator21, divisorHigh);
+        remainder = numerator21 - quotient0 * divisorHigh;
+        while (Long.compareUnsigned(quotient0, base) >= 0
+                || Long.compareUnsigned(quotient0 * divisorLow, remainder * base + numerator0) > 0) {
+            quotient0--;
+            remainder += divisorHigh;
+            if (Long.compareUnsigned(remainder, base) >= 0) break;
+        }
+        return quotient1 * base + quotient0;
+    }
+}
@@ -0,0 +1,169 @@
+package com.gbce.stocks;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values, e.g. latencies in nanos or sizes, recorded without allocation.
+ * <p>
+ * Buckets are log-linear like in HdrHistogram, values up to 32 have a bucket each and every power of two above is
+ * split into 16 buckets, so a value is reported with a relative error of at most 1/16. Values above
+ * {@link #MAX_VALUE} are counted as {@link #MAX_VALUE}, except for the maximum which is exact.
+ */
+public final class Histogram {
+
+    /**
+     * Highest value recorded to its bucket, about 68.7 seconds in nanos.
+     */
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+        total.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // lost to a higher or concurrent value, try again
+        }
+    }
+
+    /**
+     * Takes values recorded so far. Values recorded while it is taken may be counted only partly.
+     *
+     * @return snapshot of this histogram
+     */
+    public Snapshot getSnapshot() {
+        long[] counts = new long[this.counts.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) count += counts[i] = this.counts.get(i);
+        long total = this.total.get();
+        long max = this.max.get();
+        if (count == 0) return new Snapshot(0, 0, 0, 0, 0, 0, 0);
+        long min = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                min = lowestValue(i);
+                break;
+            }
+        }
+        return new Snapshot(count, min, max, (double) total / count,
+                valueAtPercentile(counts, count, max, 50), valueAtPercentile(counts, count, max, 99),
+                valueAtPercentile(counts, count, max, 99.9));
+    }
+
+    private static long valueAtPercentile(long[] counts, long count, long max, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        return (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+    }
+
+    static long highestValue(int index) {
+        return lowestValue(index + 1) - 1;
+    }
+
+    /**
+     * Values of a histogram at a point in time, percentiles are the highest values of their buckets.
+     */
+    public static final class Snapshot {
+
+        private final long count;
+
+        private final long min;
+
+        private final long max;
+
+        private final double mean;
+
+        private final long median;
+
+        private final long percentile99;
+
+        private final long percentile999;
+
+        @ConstructorProperties({"count", "min", "max", "mean", "median", "percentile99", "percentile999"})
+        public Snapshot(long count, long min, long max, double mean, long median, long percentile99, long percentile999) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.median = median;
+            this.percentile99 = percentile99;
+            this.percentile999 = percentile999;
+        }
+
+        /**
+         * @return number of recorded values
+         */
+        public long getCount() { return count; }
+
+        /**
+         * @return lowest recorded value, 0 if no value has been recorded
+         */
+        public long getMin() { return min; }
+
+        /**
+         * @return highest recorded value, 0 if no value has been recorded
+         */
+        public long getMax() { return max; }
+
+        /**
+         * @return mean of recorded values, 0 if no value has been recorded
+         */
+        public double getMean() { return mean; }
+
+        /**
+         * @return 50th percentile
+         */
+        public long getMedian() { return median; }
+
+        /**
+         * @return 99th percentile
+         */
+        public long getPercentile99() { return percentile99; }
+
+        /**
+         * @return 99.9th percentile
+         */
+        public long getPercentile999() { return percentile999; }
+
+        @Override
+        public String toString() {
+            return "Snapshot{count=" + count + ", min=" + min + ", max=" + max + ", mean=" + mean
+                    + ", median=" + median + ", percentile99=" + percentile99 + ", percentile999=" + percentile999 + '}';
+        }
+    }
+}
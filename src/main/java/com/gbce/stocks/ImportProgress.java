@@ -0,0 +1,60 @@
+package com.gbce.stocks;
+
+/**
+ * Progress of a {@link TradeImport}, reported as chunks of the file are parsed and stocks are loaded.
+ */
+public final class ImportProgress {
+
+    private final long bytesParsed;
+
+    private final long totalBytes;
+
+    private final long tradesParsed;
+
+    private final long tradesLoaded;
+
+    private final long elapsedNanos;
+
+    ImportProgress(long bytesParsed, long totalBytes, long tradesParsed, long tradesLoaded, long elapsedNanos) {
+        this.bytesParsed = bytesParsed;
+        this.totalBytes = totalBytes;
+        this.tradesParsed = tradesParsed;
+        this.tradesLoaded = tradesLoaded;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return number of bytes of the file parsed so far
+     */
+    public long getBytesParsed() { return bytesParsed; }
+
+    /**
+     * @return size of the file
+     */
+    public long getTotalBytes() { return totalBytes; }
+
+    /**
+     * @return number of trades parsed so far
+     */
+    public long getTradesParsed() { return tradesParsed; }
+
+    /**
+     * @return number of trades done by stocks so far, they are loaded once the whole file has been parsed
+     */
+    public long getTradesLoaded() { return tradesLoaded; }
+
+    /**
+     * @return nanos since the import started
+     */
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * Returns number of trades parsed per second so far, when the import has completed it is the throughput of the
+     * whole import.
+     *
+     * @return trades per second, 0 if no time has elapsed
+     */
+    public double getTradesPerSecond() {
+        return elapsedNanos == 0 ? 0 : tradesParsed * 1e9 / elapsedNanos;
+    }
+}
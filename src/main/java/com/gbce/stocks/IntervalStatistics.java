@@ -0,0 +1,48 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Number of trades, volume and volume weighted price of trades of a stock done in a time interval, see
+ * {@link Stock#getStatistics(Instant, Instant)}.
+ */
+public final class IntervalStatistics {
+
+    private final Instant from;
+
+    private final Instant to;
+
+    private final long numberOfTrades;
+
+    private final long volume;
+
+    private final BigDecimal volumeWeightedPrice;
+
+    IntervalStatistics(Instant from, Instant to, long numberOfTrades, long volume, BigDecimal volumeWeightedPrice) {
+        this.from = from;
+        this.to = to;
+        this.numberOfTrades = numberOfTrades;
+        this.volume = volume;
+        this.volumeWeightedPrice = volumeWeightedPrice;
+    }
+
+    /**
+     * @return start of the interval, inclusive
+     */
+    public Instant getFrom() { return from; }
+
+    /**
+     * @return end of the interval, exclusive
+     */
+    public Instant getTo() { return to; }
+
+    public long getNumberOfTrades() { return numberOfTrades; }
+
+    public long getVolume() { return volume; }
+
+    /**
+     * @return volume weighted price or null if no trades have been done in the interval
+     */
+    public BigDecimal getVolumeWeightedPrice() { return volumeWeightedPrice; }
+}
@@ -0,0 +1,71 @@
+package com.gbce.stocks;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Objects;
+
+/**
+ * Switch for metrics of stocks and indices, and their registration as JMX MBeans.
+ * <p>
+ * Metrics are disabled by default. While they are disabled, instrumented operations only read a volatile flag, they
+ * neither read the clock nor record anything. Metrics recorded while enabled are kept when they are disabled.
+ */
+public final class Metrics {
+
+    /**
+     * Domain of object names metrics are registered with.
+     */
+    public static final String DOMAIN = "com.gbce.stocks";
+
+    private static volatile boolean enabled;
+
+    private Metrics() {
+    }
+
+    /**
+     * Enables or disables recording of metrics, it can be done at any time.
+     *
+     * @param enabled true to record metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Tells whether metrics are recorded.
+     *
+     * @return true if metrics are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers metrics of the stock, as {@code com.gbce.stocks:type=Stock,name=<stock symbol>}.
+     *
+     * @param server server must be specified otherwise exception is thrown
+     * @param stock stock must be specified otherwise exception is thrown
+     * @return name the metrics are registered with
+     * @throws JMException if the metrics cannot be registered, e.g. a stock with the same symbol is already registered
+     */
+    public static ObjectName register(MBeanServer server, Stock stock) throws JMException {
+        Objects.requireNonNull(server);
+        ObjectName name = new ObjectName(DOMAIN + ":type=Stock,name=" + ObjectName.quote(stock.getStockSymbol()));
+        return server.registerMBean(stock.getMetrics(), name).getObjectName();
+    }
+
+    /**
+     * Registers metrics of the index, as {@code com.gbce.stocks:type=StockIndex,name=<index name>}.
+     *
+     * @param server server must be specified otherwise exception is thrown
+     * @param index index must be specified otherwise exception is thrown
+     * @return name the metrics are registered with
+     * @throws JMException if the metrics cannot be registered, e.g. an index with the same name is already registered
+     */
+    public static ObjectName register(MBeanServer server, StockIndex index) throws JMException {
+        Objects.requireNonNull(server);
+        ObjectName name = new ObjectName(DOMAIN + ":type=StockIndex,name=" + ObjectName.quote(index.getName()));
+        return server.registerMBean(index.getMetrics(), name).getObjectName();
+    }
+}
@@ -0,0 +1,389 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit order book of a stock with price-time priority, fills are done as trades of the stock.
+ * <p>
+ * An order is matched against resting orders of the other side at their prices, best price first and, at the same
+ * price, oldest first, and its remainder rests in the book until it is filled or cancelled. Each fill is a trade of
+ * the stock at the price of the resting order, with the indicator of the incoming order.
+ * <p>
+ * Orders and price levels are kept in primitive arrays: orders in a pool linked into a queue per price level, price
+ * levels in an array sorted so the best price is last. Placing, cancelling and matching orders do not allocate once
+ * the arrays have grown to the size of the book.
+ */
+public final class OrderBook {
+
+    /**
+     * Id returned for an order which has been filled in full when placed, so it has never rested in the book.
+     */
+    public static final long FILLED = -1;
+
+    private static final int INITIAL_ORDERS = 1_024;
+
+    private static final int INITIAL_LEVELS = 64;
+
+    private static final int NONE = -1;
+
+    private final Stock stock;
+
+    private final Lock lock = new ReentrantLock();
+
+    // order pool, a slot is either resting on a price level or free
+    private int[] quantities = new int[INITIAL_ORDERS];
+    private long[] prices = new long[INITIAL_ORDERS];
+    private byte[] scales = new byte[INITIAL_ORDERS];
+    private boolean[] bids = new boolean[INITIAL_ORDERS];
+    private int[] nextSlots = new int[INITIAL_ORDERS];
+    private int[] previousSlots = new int[INITIAL_ORDERS];
+    // incremented when a slot is freed, so ids of orders which are not resting anymore are not valid
+    private int[] generations = new int[INITIAL_ORDERS];
+
+    private int freeSlot = NONE;
+
+    private int usedSlots;
+
+    private int restingOrders;
+
+    private final PriceLevels bidLevels = new PriceLevels();
+
+    private final PriceLevels askLevels = new PriceLevels();
+
+    /**
+     * Price levels of a side of the book. Levels are sorted by key, which is the price for bids and the negated price
+     * for asks, so the best level is last on both sides.
+     */
+    private static final class PriceLevels {
+
+        long[] keys = new long[INITIAL_LEVELS];
+        int[] heads = new int[INITIAL_LEVELS];
+        int[] tails = new int[INITIAL_LEVELS];
+        long[] quantities = new long[INITIAL_LEVELS];
+        int count;
+
+        /**
+         * @return index of the level or -(insertion point) - 1 if there is no level with the key
+         */
+        int find(long key) {
+            // the best levels are the most likely ones
+            if (count > 0 && keys[count - 1] == key) return count - 1;
+            return Arrays.binarySearch(keys, 0, count, key);
+        }
+
+        int insert(int index, long key) {
+            if (count == keys.length) {
+                int capacity = count * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                heads = Arrays.copyOf(heads, capacity);
+                tails = Arrays.copyOf(tails, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+            int moved = count - index;
+            System.arraycopy(keys, index, keys, index + 1, moved);
+            System.arraycopy(heads, index, heads, index + 1, moved);
+            System.arraycopy(tails, index, tails, index + 1, moved);
+            System.arraycopy(quantities, index, quantities, index + 1, moved);
+            keys[index] = key;
+            heads[index] = NONE;
+            tails[index] = NONE;
+            quantities[index] = 0;
+            count++;
+            return index;
+        }
+
+        void remove(int index) {
+            int moved = count - index - 1;
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(heads, index + 1, heads, index, moved);
+            System.arraycopy(tails, index + 1, tails, index, moved);
+            System.arraycopy(quantities, index + 1, quantities, index, moved);
+            count--;
+        }
+    }
+
+    /**
+     * Creates empty order book of the stock.
+     *
+     * @param stock stock must be specified otherwise exception is thrown
+     */
+    public OrderBook(Stock stock) {
+        this.stock = Objects.requireNonNull(stock);
+    }
+
+    /**
+     * Places limit order to buy, it is matched against asks at or below the price.
+     *
+     * @param quantity number of shares must be more than 0 otherwise exception is thrown
+     * @param price limit price must be more than 0 with at most 8 decimal places otherwise exception is thrown
+     * @return id of the order, it can be cancelled while any of it rests in the book, or {@link #FILLED}
+     */
+    public long buy(int quantity, BigDecimal price) {
+        return place(quantity, price, true);
+    }
+
+    /**
+     * Places limit order to sell, it is matched against bids at or above the price.
+     *
+     * @param quantity number of shares must be more than 0 otherwise exception is thrown
+     * @param price limit price must be more than 0 with at most 8 decimal places otherwise exception is thrown
+     * @return id of the order, it can be cancelled while any of it rests in the book, or {@link #FILLED}
+     */
+    public long sell(int quantity, BigDecimal price) {
+        return place(quantity, price, false);
+    }
+
+    private long place(int quantity, BigDecimal price, boolean bid) {
+        Trade.validate(quantity, price);
+        long fixedPointPrice = TradeStore.toFixedPoint(price);
+        byte scale = TradeStore.toScale(price);
+        long key = bid ? fixedPointPrice : -fixedPointPrice;
+        lock.lock();
+        try {
+            int remaining = match(bid ? askLevels : bidLevels, -key, quantity, bid);
+            if (remaining == 0) return FILLED;
+            int slot = allocate();
+            quantities[slot] = remaining;
+            prices[slot] = fixedPointPrice;
+            scales[slot] = scale;
+            bids[slot] = bid;
+            rest(bid ? bidLevels : askLevels, key, slot);
+            return id(slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fills the incoming order against levels of the other side, which cross its price.
+     *
+     * @param levels levels of the other side
+     * @param worstKey key of the worst level of the other side which crosses the price
+     * @return quantity left
+     */
+    private int match(PriceLevels levels, long worstKey, int quantity, boolean bid) {
+        Trade.TradeIndicator indicator = bid ? Trade.TradeIndicator.BUY : Trade.TradeIndicator.SELL;
+        while (quantity > 0 && levels.count > 0 && levels.keys[levels.count - 1] >= worstKey) {
+            int level = levels.count - 1;
+            int resting = levels.heads[level];
+            int fill = Math.min(quantity, quantities[resting]);
+            stock.trade(fill, prices[resting], scales[resting], indicator);
+            quantity -= fill;
+            quantities[resting] -= fill;
+            levels.quantities[level] -= fill;
+            if (quantities[resting] == 0) {
+                unlink(levels, level, resting);
+                free(resting);
+                restingOrders--;
+            }
+        }
+        return quantity;
+    }
+
+    private void rest(PriceLevels levels, long key, int slot) {
+        int level = levels.find(key);
+        if (level < 0) level = levels.insert(-level - 1, key);
+        int tail = levels.tails[level];
+        previousSlots[slot] = tail;
+        nextSlots[slot] = NONE;
+        if (tail == NONE) levels.heads[level] = slot;
+        else nextSlots[tail] = slot;
+        levels.tails[level] = slot;
+        levels.quantities[level] += quantities[slot];
+        restingOrders++;
+    }
+
+    private void unlink(PriceLevels levels, int level, int slot) {
+        int previous = previousSlots[slot];
+        int next = nextSlots[slot];
+        if (previous == NONE) levels.heads[level] = next;
+        else nextSlots[previous] = next;
+        if (next == NONE) levels.tails[level] = previous;
+        else previousSlots[next] = previous;
+        if (levels.heads[level] == NONE) levels.remove(level);
+    }
+
+    /**
+     * Cancels the rest of the order.
+     *
+     * @param orderId id of the order
+     * @return true if the order has been resting in the book, false if it has been filled or cancelled already
+     */
+    public boolean cancel(long orderId) {
+        lock.lock();
+        try {
+            int slot = slot(orderId);
+            if (slot == NONE) return false;
+            PriceLevels levels = bids[slot] ? bidLevels : askLevels;
+            int level = levels.find(bids[slot] ? prices[slot] : -prices[slot]);
+            levels.quantities[level] -= quantities[slot];
+            unlink(levels, level, slot);
+            free(slot);
+            restingOrders--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns quantity of the order resting in the book.
+     *
+     * @param orderId id of the order
+     * @return quantity not filled yet or 0 if the order has been filled or cancelled
+     */
+    public int getRestingQuantity(long orderId) {
+        lock.lock();
+        try {
+            int slot = slot(orderId);
+            return slot == NONE ? 0 : quantities[slot];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the highest price of bids.
+     *
+     * @return best bid or null if there are no bids
+     */
+    public BigDecimal getBestBid() {
+        return bestPrice(bidLevels);
+    }
+
+    /**
+     * Returns the lowest price of asks.
+     *
+     * @return best ask or null if there are no asks
+     */
+    public BigDecimal getBestAsk() {
+        return bestPrice(askLevels);
+    }
+
+    private BigDecimal bestPrice(PriceLevels levels) {
+        lock.lock();
+        try {
+            if (levels.count == 0) return null;
+            int head = levels.heads[levels.count - 1];
+            return BigDecimal.valueOf(prices[head], TradeStore.PRICE_SCALE).setScale(scales[head]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns quantity of bids at the price.
+     *
+     * @param price price must be specified otherwise exception is thrown
+     * @return quantity of bids
+     */
+    public long getBidQuantity(BigDecimal price) {
+        return quantity(bidLevels, TradeStore.toFixedPoint(price));
+    }
+
+    /**
+     * Returns quantity of asks at the price.
+     *
+     * @param price price must be specified otherwise exception is thrown
+     * @return quantity of asks
+     */
+    public long getAskQuantity(BigDecimal price) {
+        return quantity(askLevels, -TradeStore.toFixedPoint(price));
+    }
+
+    private long quantity(PriceLevels levels, long key) {
+        lock.lock();
+        try {
+            int level = levels.find(key);
+            return level < 0 ? 0 : levels.quantities[level];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of price levels with bids
+     */
+    public int getBidLevels() {
+        lock.lock();
+        try {
+            return bidLevels.count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of price levels with asks
+     */
+    public int getAskLevels() {
+        lock.lock();
+        try {
+            return askLevels.count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of orders resting in the book
+     */
+    public int getRestingOrders() {
+        lock.lock();
+        try {
+            return restingOrders;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return stock fills are traded on
+     */
+    public Stock getStock() {
+        return stock;
+    }
+
+    private int allocate() {
+        if (freeSlot != NONE) {
+            int slot = freeSlot;
+            freeSlot = nextSlots[slot];
+            return slot;
+        }
+        if (usedSlots == quantities.length) {
+            int capacity = usedSlots * 2;
+            quantities = Arrays.copyOf(quantities, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            bids = Arrays.copyOf(bids, capacity);
+            nextSlots = Arrays.copyOf(nextSlots, capacity);
+            previousSlots = Arrays.copyOf(previousSlots, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+        }
+        return usedSlots++;
+    }
+
+    private void free(int slot) {
+        quantities[slot] = 0;
+        generations[slot]++;
+        nextSlots[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    private long id(int slot) {
+        return (long) generations[slot] << 32 | slot;
+    }
+
+    /**
+     * @return slot of the order resting in the book or NONE
+     */
+    private int slot(long orderId) {
+        int slot = (int) orderId;
+        if (slot < 0 || slot >= usedSlots || generations[slot] != (int) (orderId >>> 32) || quantities[slot] == 0) return NONE;
+        return slot;
+    }
+}
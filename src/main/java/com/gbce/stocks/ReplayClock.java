@@ -0,0 +1,56 @@
+package com.gbce.stocks;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Clock which only moves when it is set, used to replay recorded trades at their own times, see {@link TradeReplay}.
+ */
+public final class ReplayClock extends Clock {
+
+    private final AtomicReference<Instant> instant;
+
+    private final ZoneId zone;
+
+    /**
+     * Creates clock set to the instant, in UTC.
+     *
+     * @param instant instant must be specified otherwise exception is thrown
+     */
+    public ReplayClock(Instant instant) {
+        this(new AtomicReference<>(Objects.requireNonNull(instant)), ZoneOffset.UTC);
+    }
+
+    private ReplayClock(AtomicReference<Instant> instant, ZoneId zone) {
+        this.instant = instant;
+        this.zone = zone;
+    }
+
+    /**
+     * Sets the clock, clocks with other zones made of this clock are set too.
+     *
+     * @param instant instant must be specified otherwise exception is thrown
+     */
+    public void set(Instant instant) {
+        this.instant.set(Objects.requireNonNull(instant));
+    }
+
+    @Override
+    public Instant instant() {
+        return instant.get();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new ReplayClock(instant, zone);
+    }
+}
@@ -0,0 +1,63 @@
+package com.gbce.stocks;
+
+import java.time.Duration;
+import java.util.Objects;
+
+public final class RetentionPolicy {
+
+    private static final RetentionPolicy UNBOUNDED = new RetentionPolicy(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    // nanos
+    private final long maxAge;
+
+    private final int maxCount;
+
+    private RetentionPolicy(long maxAge, int maxCount) {
+        this.maxAge = maxAge;
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * Retention policy keeping all trades.
+     *
+     * @return retention policy that never prunes trades
+     */
+    public static RetentionPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Retention policy keeping trades not older than the given age, the age is measured against the last trade.
+     *
+     * @param maxAge maximum age must be specified and must be positive otherwise exception is thrown
+     * @return retention policy pruning trades older than the given age
+     */
+    public static RetentionPolicy maxAge(Duration maxAge) {
+        Objects.requireNonNull(maxAge);
+        if (maxAge.isNegative() || maxAge.isZero()) throw new IllegalArgumentException("Max age must be positive");
+        return new RetentionPolicy(maxAge.compareTo(Duration.ofNanos(Long.MAX_VALUE)) < 0 ? maxAge.toNanos() : Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retention policy keeping the given number of the most recent trades.
+     *
+     * @param maxCount maximum number of trades must be more than 0 otherwise exception is thrown
+     * @return retention policy pruning all but the given number of the most recent trades
+     */
+    public static RetentionPolicy maxCount(int maxCount) {
+        if (maxCount <= 0) throw new IllegalArgumentException("Max count must be more than 0");
+        return new RetentionPolicy(Long.MAX_VALUE, maxCount);
+    }
+
+    /**
+     * Tells whether the oldest retained trade has to be pruned.
+     *
+     * @param count number of retained trades
+     * @param oldest epoch nanos of the oldest retained trade
+     * @param newest epoch nanos of the newest retained trade
+     * @return true if the oldest trade is not to be retained anymore
+     */
+    boolean isExceeded(int count, long oldest, long newest) {
+        return count > maxCount || newest - oldest > maxAge;
+    }
+}
@@ -2,27 +2,141 @@ package com.gbce.stocks;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.math.RoundingMode;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Objects;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class Stock {
 
+    private static final long VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS = 300_000_000_000L;
+
+    private static final long NO_HORIZON = Long.MIN_VALUE;
+
     private final int lastDividend;
 
     private final int parValue;
 
     private final String stockSymbol;
 
-    private final List<Trade> trades = new ArrayList<>();
+    private final TradeStore trades = new TradeStore();
+
+    // serializes writers only, readers take snapshots of the trade store without locking
+    private final Lock writeLock = new ReentrantLock();
+
+    // sequence number of the oldest trade of the last 5 minutes
+    private volatile long windowStart;
+
+    // epoch nanos of the newest trade, trades are kept in the order of time, written with write lock held only
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    // epoch nanos of the newest pruned trade
+    private volatile long retentionHorizon = NO_HORIZON;
+
+    private RetentionPolicy retentionPolicy = RetentionPolicy.unbounded();
+
+    private TradeArchive tradeArchive;
+
+    // null when trades are not persisted
+    private volatile TradeJournal tradeJournal;
+
+    // journal record number of the trade with sequence number 0, so a snapshot knows which journal records it covers
+    private volatile long journalBase;
+
+    // number of journal records covered by the restored snapshot, written with write lock held only
+    private long restoredJournalRecords;
+
+    // null for BigDecimal arithmetic
+    private volatile FixedPoint fixedPoint;
+
+    // replaced with write lock held when the last trade or the arithmetic changes, so reads take a single volatile load
+    private volatile DerivedValues derivedValues = new DerivedValues(0, (byte) 0, null);
+
+    // marks a derived value which has not been calculated yet, compared by identity
+    private static final BigDecimal NOT_CALCULATED = new BigDecimal(0);
+
+    /**
+     * Price of the last trade and values derived from it, each calculated once when it is first asked for.
+     * Values are cached without synchronization, a value may be calculated more than once by racing readers but
+     * BigDecimal is immutable so a cached value is always seen complete.
+     */
+    private static final class DerivedValues {
+
+        // fixed point with TradeStore.PRICE_SCALE, 0 when no trades have been done
+        final long price;
+
+        final byte scale;
+
+        final FixedPoint fixedPoint;
+
+        BigDecimal peRatio = NOT_CALCULATED;
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        BigDecimal dividendYield = NOT_CALCULATED;
 
-    private Trade lastTrade;
+        DerivedValues(long price, byte scale, FixedPoint fixedPoint) {
+            this.price = price;
+            this.scale = scale;
+            this.fixedPoint = fixedPoint;
+        }
+
+        /**
+         * @return price as traded
+         */
+        BigDecimal decimalPrice() {
+            return BigDecimal.valueOf(price, TradeStore.PRICE_SCALE).setScale(scale);
+        }
+    }
+
+    // logarithm of the volume weighted stock price of the window it has been taken for, replaced when the window changes
+    private volatile WindowPrice windowPrice = new WindowPrice(0, 0, null, Double.NaN);
+
+    /**
+     * Logarithm of the volume weighted stock price of trades with sequence numbers from start to next, taken with
+     * the arithmetic. Trades are never changed once done, so the price holds as long as the window does.
+     */
+    private static final class WindowPrice {
+
+        final long start;
+
+        final long next;
+
+        final FixedPoint fixedPoint;
+
+        final double logPrice;
+
+        WindowPrice(long start, long next, FixedPoint fixedPoint, double logPrice) {
+            this.start = start;
+            this.next = next;
+            this.fixedPoint = fixedPoint;
+            this.logPrice = logPrice;
+        }
+    }
+
+    // bar series by interval, replaced on change
+    private volatile BarSeries[] barSeries = new BarSeries[0];
+
+    // named windows, replaced on change
+    private volatile TimeWindow[] windows = new TimeWindow[0];
+
+    // notified after each trade, outside of the write lock
+    private final List<Runnable> tradeListeners = new CopyOnWriteArrayList<>();
+
+    private final StockMetrics metrics = new StockMetrics(this);
+
+    // source of timestamps of trades and of the end of windows
+    private volatile Clock clock = Clock.systemUTC();
 
     /**
      * Constructor.
@@ -44,7 +158,7 @@ public abstract class Stock {
      * Buys a number of shares at given price.
      *
      * @param quantity number of shares to buy
-     * @param price price
+     * @param price price, it cannot have more than 8 decimal places
      */
     public void buy(int quantity, BigDecimal price) {
         trade(quantity, price, Trade.TradeIndicator.BUY);
@@ -54,99 +168,881 @@ public abstract class Stock {
      * Sells a number of shares at given price.
      *
      * @param quantity number of shares to buy
-     * @param price price
+     * @param price price, it cannot have more than 8 decimal places
      */
     public void sell(int quantity, BigDecimal price) {
         trade(quantity, price, Trade.TradeIndicator.SELL);
     }
 
     private void trade(int quantity, BigDecimal price, Trade.TradeIndicator indicator) {
-        lock.writeLock().lock();
+        Trade.validate(quantity, price);
+        Objects.requireNonNull(indicator);
+        trade(quantity, TradeStore.toFixedPoint(price), TradeStore.toScale(price), indicator);
+    }
+
+    /**
+     * Does trade of a validated quantity and price, e.g. a fill of an {@link OrderBook}.
+     *
+     * @param quantity quantity more than 0
+     * @param fixedPointPrice price more than 0 with {@link TradeStore#PRICE_SCALE}
+     * @param scale scale the price has been given with
+     * @param indicator indicator
+     */
+    void trade(int quantity, long fixedPointPrice, byte scale, Trade.TradeIndicator indicator) {
+        lockForTrades();
         try {
-            lastTrade = new Trade(quantity, price, Instant.now(), indicator);
-            trades.add(lastTrade);
+            // the clock is not allowed to go back past trades done earlier, e.g. ones of a batch with exchange times
+            long timestamp = Math.max(TradeStore.toEpochNanos(clock.instant()), lastTimestamp);
+            if (tradeJournal != null) {
+                tradeJournal.append(timestamp, quantity, fixedPointPrice, scale, indicator);
+                tradeJournal.endBatch();
+            }
+            trades.add(timestamp, quantity, fixedPointPrice, scale, indicator);
+            updateBars(trades.nextSequence() - 1);
+            derivedValues = new DerivedValues(fixedPointPrice, scale, fixedPoint);
+            lastTimestamp = timestamp;
+            evict(timestamp);
+            prune();
+            if (Metrics.isEnabled()) metrics.recordTrades(1);
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
+        for (Runnable listener : tradeListeners) listener.run();
     }
 
     /**
-     * Returns the last trade.
+     * Does all trades of the batch at once, with timestamps of the batch. Either all trades are done or none is.
      *
-     * @return last trade or null if there have not been any trades done yet
+     * @param batch batch must be specified otherwise exception is thrown, its trades cannot be done before the last trade
+     *              of this stock otherwise exception is thrown
      */
-    public Trade getLastTrade() {
-        lock.readLock().lock();
+    public void tradeBatch(TradeBatch batch) {
+        Objects.requireNonNull(batch);
+        if (batch.isEmpty()) return;
+        lockForTrades();
+        try {
+            if (batch.timestamp(0) < lastTimestamp) throw new IllegalArgumentException("Trades cannot be done before the last trade");
+            if (tradeJournal != null) {
+                batch.appendTo(tradeJournal);
+                tradeJournal.endBatch();
+            }
+            long from = trades.nextSequence();
+            batch.addTo(trades);
+            updateBars(from);
+            publishLastTrade();
+            lastTimestamp = batch.timestamp(batch.size() - 1);
+            evict(lastTimestamp);
+            prune();
+            if (Metrics.isEnabled()) {
+                metrics.recordTrades(batch.size());
+                metrics.recordBatch();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        for (Runnable listener : tradeListeners) listener.run();
+    }
+
+    /**
+     * Takes the write lock for trades, timing the wait when metrics are enabled.
+     */
+    private void lockForTrades() {
+        if (!Metrics.isEnabled()) {
+            writeLock.lock();
+            return;
+        }
+        long start = System.nanoTime();
+        writeLock.lock();
+        metrics.recordLockWait(System.nanoTime() - start);
+    }
+
+    /**
+     * Subscribes to updates of this stock. An update is delivered after trades have been done, it carries trades done
+     * since the previous update and the volume weighted stock price and dividend yield at the time it is delivered.
+     * A subscriber which falls behind gets the trades in fewer, bigger updates, up to the buffer size, and older trades
+     * are skipped.
+     *
+     * @param subscriber subscriber must be specified otherwise exception is thrown
+     * @param executor executor updates are delivered on, one at a time, must be specified otherwise exception is thrown
+     * @param bufferSize maximum number of trades in an update must be more than 0 otherwise exception is thrown
+     */
+    public void subscribe(Subscriber<? super StockUpdate> subscriber, Executor executor, int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be more than 0");
+        StockSubscription subscription = new StockSubscription(subscriber, executor, bufferSize);
+        addTradeListener(subscription.listener);
+        subscription.start();
+    }
+
+    private final class StockSubscription extends ConflatingSubscription<StockUpdate> {
+
+        final Runnable listener = this::signal;
+
+        final int bufferSize;
+
+        // sequence number of the next trade to deliver
+        long next = trades.nextSequence();
+
+        StockSubscription(Subscriber<? super StockUpdate> subscriber, Executor executor, int bufferSize) {
+            super(subscriber, executor);
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        StockUpdate poll() {
+            TradeStore.View view = trades.view();
+            if (view.next() == next) return null;
+            long from = Math.max(next, Math.max(view.first(), view.next() - bufferSize));
+            List<Trade> trades = new ArrayList<>((int) (view.next() - from));
+            for (long sequence = from; sequence < view.next(); sequence++) {
+                trades.add(view.trade(sequence));
+            }
+            long skipped = from - next;
+            next = view.next();
+            return new StockUpdate(stockSymbol, Collections.unmodifiableList(trades), skipped, getVolumeWeightedStockPrice(), getDividendYield());
+        }
+
+        @Override
+        void onCancel() {
+            removeTradeListener(listener);
+        }
+    }
+
+    /**
+     * Starts keeping bars of the interval, e.g. 1 second, 1 minute or 5 minutes, which are updated as trades are
+     * done. Bars of retained trades are built right away. Intervals are aligned to the epoch and only intervals in
+     * which trades have been done get a bar.
+     *
+     * @param interval interval must be specified, positive and not kept yet otherwise exception is thrown
+     * @param capacity number of the most recent bars kept must be more than 0 otherwise exception is thrown
+     */
+    public void addBars(Duration interval, int capacity) {
+        long nanos = toNanos(interval);
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be more than 0");
+        writeLock.lock();
+        try {
+            if (findBarSeries(nanos) != null) throw new IllegalArgumentException("Bars of " + interval + " are already kept");
+            BarSeries series = new BarSeries(nanos, capacity);
+            TradeStore.View view = trades.view();
+            series.add(view, view.first(), view.next());
+            BarSeries[] barSeries = Arrays.copyOf(this.barSeries, this.barSeries.length + 1);
+            barSeries[barSeries.length - 1] = series;
+            this.barSeries = barSeries;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the most recent bars of the interval, the last one is of the interval of the last trade, which may not
+     * have ended yet.
+     *
+     * @param interval interval bars are kept of, see {@link #addBars(Duration, int)}, otherwise exception is thrown
+     * @return unmodifiable list of bars, oldest first
+     */
+    public List<Bar> getBars(Duration interval) {
+        BarSeries series = findBarSeries(toNanos(interval));
+        if (series == null) throw new IllegalArgumentException("Bars of " + interval + " are not kept");
+        return series.bars(fixedPoint);
+    }
+
+    private static long toNanos(Duration duration) {
+        Objects.requireNonNull(duration);
+        if (duration.isNegative() || duration.isZero()) throw new IllegalArgumentException("Duration must be positive");
+        return duration.compareTo(Duration.ofNanos(Long.MAX_VALUE)) < 0 ? duration.toNanos() : Long.MAX_VALUE;
+    }
+
+    private BarSeries findBarSeries(long interval) {
+        for (BarSeries series : barSeries) {
+            if (series.interval == interval) return series;
+        }
+        return null;
+    }
+
+    /**
+     * Starts keeping a named window of the most recent trades, e.g. 1 minute or 1 hour. Windows are moved forward as
+     * trades are done, so reading one takes the same time whatever its length. Only retained trades are taken into
+     * account, see {@link #isRetainedSince(Instant)}.
+     *
+     * @param name name must be specified and not kept yet otherwise exception is thrown
+     * @param length length must be specified and positive otherwise exception is thrown
+     */
+    public void addWindow(String name, Duration length) {
+        Objects.requireNonNull(name);
+        long nanos = toNanos(length);
+        writeLock.lock();
+        try {
+            if (findWindow(name) != null) throw new IllegalArgumentException("Window " + name + " is already kept");
+            long start = trades.isEmpty() ? trades.nextSequence() : trades.view().ceiling(lastTimestamp - nanos);
+            TimeWindow[] windows = Arrays.copyOf(this.windows, this.windows.length + 1);
+            windows[windows.length - 1] = new TimeWindow(name, nanos, start);
+            this.windows = windows;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stops keeping a named window.
+     *
+     * @param name name of a kept window otherwise exception is thrown
+     */
+    public void removeWindow(String name) {
+        writeLock.lock();
+        try {
+            TimeWindow window = findWindow(name);
+            if (window == null) throw new IllegalArgumentException("Window " + name + " is not kept");
+            List<TimeWindow> windows = new ArrayList<>(Arrays.asList(this.windows));
+            windows.remove(window);
+            this.windows = windows.toArray(new TimeWindow[0]);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns statistics of trades in a named window as of now.
+     *
+     * @param name name of a kept window, see {@link #addWindow(String, Duration)}, otherwise exception is thrown
+     * @return statistics of the window
+     */
+    public WindowStatistics getWindow(String name) {
+        TimeWindow window = findWindow(name);
+        if (window == null) throw new IllegalArgumentException("Window " + name + " is not kept");
+        // window start has to be read before the view, so it is not ahead of the view
+        long start = window.start;
+        return windowStatistics(window, start, trades.view(), now(), new WideSum());
+    }
+
+    /**
+     * Returns statistics of trades in all named windows as of now, they are all taken of the same trades.
+     *
+     * @return statistics of the windows in the order they have been added
+     */
+    public List<WindowStatistics> getWindows() {
+        TimeWindow[] windows = this.windows;
+        long[] starts = new long[windows.length];
+        for (int i = 0; i < windows.length; i++) starts[i] = windows[i].start;
+        TradeStore.View view = trades.view();
+        long now = now();
+        WideSum total = new WideSum();
+        List<WindowStatistics> statistics = new ArrayList<>(windows.length);
+        for (int i = 0; i < windows.length; i++) statistics.add(windowStatistics(windows[i], starts[i], view, now, total));
+        return Collections.unmodifiableList(statistics);
+    }
+
+    private WindowStatistics windowStatistics(TimeWindow window, long start, TradeStore.View view, long now, WideSum total) {
+        start = windowStart(view, start, now - window.length);
+        long volume = view.sum(start, view.next(), total);
+        return new WindowStatistics(window.name, Duration.ofNanos(window.length), view.next() - start, volume,
+                volumeWeightedStockPrice(total, volume));
+    }
+
+    private TimeWindow findWindow(String name) {
+        for (TimeWindow window : windows) {
+            if (window.name.equals(name)) return window;
+        }
+        return null;
+    }
+
+    /**
+     * Adds trades from the sequence number on to bars, must be called with write lock held.
+     */
+    private void updateBars(long from) {
+        BarSeries[] barSeries = this.barSeries;
+        if (barSeries.length == 0) return;
+        TradeStore.View view = trades.view();
+        for (BarSeries series : barSeries) series.add(view, Math.max(from, view.first()), view.next());
+    }
+
+    void addTradeListener(Runnable listener) {
+        tradeListeners.add(listener);
+    }
+
+    void removeTradeListener(Runnable listener) {
+        tradeListeners.remove(listener);
+    }
+
+    /**
+     * Moves windows past trades aged out as of the newest trade, must be called with write lock held.
+     */
+    private void evict(long newest) {
+        long cutoff = newest - VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS;
+        long start = windowStart;
+        while (start < trades.nextSequence() && trades.timestamp(start) < cutoff) start++;
+        windowStart = start;
+        for (TimeWindow window : windows) window.evict(trades, newest);
+    }
+
+    /**
+     * Sets retention policy for trades of this stock, trades which are not retained anymore are pruned immediately.
+     *
+     * @param retentionPolicy retention policy must be specified otherwise exception is thrown
+     */
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        Objects.requireNonNull(retentionPolicy);
+        writeLock.lock();
+        try {
+            this.retentionPolicy = retentionPolicy;
+            prune();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets archive which receives trades pruned according to the retention policy.
+     *
+     * @param tradeArchive archive or null if pruned trades are to be discarded
+     */
+    public void setTradeArchive(TradeArchive tradeArchive) {
+        writeLock.lock();
+        try {
+            this.tradeArchive = tradeArchive;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets journal trades of this stock are persisted to. Trades in the journal which this stock does not have are
+     * recovered first, i.e. all of them or the ones after the restored snapshot, see {@link #restoreSnapshot(Path)},
+     * including the window of the last 5 minutes, and the retention policy is applied to them without archiving them again.
+     *
+     * @param tradeJournal journal or null if trades are not to be persisted, the journal must not belong to another
+     *                     stock and if it has trades, this stock cannot have any other than ones restored from a
+     *                     snapshot of the journal, otherwise exception is thrown, its trades cannot be done before
+     *                     ones of this stock or earlier ones of the journal otherwise exception is thrown
+     */
+    public void setTradeJournal(TradeJournal tradeJournal) {
+        boolean recovered = false;
+        writeLock.lock();
+        try {
+            if (tradeJournal != null) {
+                long from = restoredJournalRecords;
+                if (tradeJournal.size() < from) throw new IllegalStateException("Journal is behind the restored snapshot");
+                if (tradeJournal.size() > from && from == 0 && !trades.isEmpty()) throw new IllegalStateException("Trades cannot be recovered to a stock which has trades");
+                // checked before any trade is recovered, trades out of order would break searches by time
+                long[] last = {lastTimestamp};
+                tradeJournal.replay(from, (timestamp, quantity, price, scale, indicator) -> {
+                    if (timestamp < last[0]) throw new IllegalStateException("Journal has trades done before earlier ones");
+                    last[0] = timestamp;
+                });
+                tradeJournal.attach();
+                if (tradeJournal.size() > from) {
+                    tradeJournal.replay(from, (timestamp, quantity, price, scale, indicator) -> {
+                        trades.add(timestamp, quantity, price, scale, indicator);
+                        // before the trade can be pruned
+                        updateBars(trades.nextSequence() - 1);
+                        lastTimestamp = timestamp;
+                        prune(false);
+                    });
+                    publishLastTrade();
+                    evict(lastTimestamp);
+                    recovered = true;
+                }
+                journalBase = tradeJournal.size() - trades.nextSequence();
+            }
+            if (this.tradeJournal != null) this.tradeJournal.detach();
+            this.tradeJournal = tradeJournal;
+        } finally {
+            writeLock.unlock();
+        }
+        if (recovered) for (Runnable listener : tradeListeners) listener.run();
+    }
+
+    /**
+     * Writes snapshot of retained trades of this stock without blocking trades, which can be done meanwhile.
+     * When trades are journaled the snapshot records how many journal records it covers, so only the journal tail
+     * has to be replayed on restart.
+     *
+     * @param path path of the snapshot file must be specified otherwise exception is thrown, it is replaced at once
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        Objects.requireNonNull(path);
+        TradeStore.View view;
+        long journalRecords;
+        long horizon;
+        while (true) {
+            TradeJournal tradeJournal = this.tradeJournal;
+            long base = journalBase;
+            horizon = retentionHorizon;
+            view = trades.view();
+            // a journal could be set meanwhile, which changes its base
+            if (base == journalBase && tradeJournal == this.tradeJournal) {
+                journalRecords = tradeJournal != null ? view.next() + base : 0;
+                break;
+            }
+        }
+        StockSnapshot.write(path, stockSymbol, view, journalRecords, horizon);
+    }
+
+    /**
+     * Restores retained trades of this stock from a snapshot, e.g. on restart before the journal is set. The retention
+     * policy is applied to them without archiving them again.
+     *
+     * @param path path of a snapshot of this stock must be specified otherwise exception is thrown
+     * @throws IOException if the snapshot cannot be read
+     * @throws IllegalStateException if this stock has trades or a journal
+     */
+    public void restoreSnapshot(Path path) throws IOException {
+        StockSnapshot snapshot = StockSnapshot.read(Objects.requireNonNull(path));
+        if (!stockSymbol.equals(snapshot.stockSymbol)) throw new IllegalArgumentException("Snapshot is of stock " + snapshot.stockSymbol);
+        writeLock.lock();
         try {
-            return lastTrade;
+            if (!trades.isEmpty() || trades.nextSequence() > 0 || tradeJournal != null) throw new IllegalStateException("Snapshot cannot be restored to a stock which has trades or a journal");
+            snapshot.restore(trades);
+            updateBars(trades.firstSequence());
+            publishLastTrade();
+            retentionHorizon = snapshot.retentionHorizon;
+            restoredJournalRecords = snapshot.journalRecords;
+            if (!trades.isEmpty()) {
+                lastTimestamp = trades.timestamp(trades.nextSequence() - 1);
+                windowStart = trades.view().ceiling(lastTimestamp - VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS);
+                for (TimeWindow window : windows) window.start = trades.view().ceiling(lastTimestamp - window.length);
+                prune(false);
+            } else {
+                windowStart = trades.firstSequence();
+            }
         } finally {
-            lock.readLock().unlock();
+            writeLock.unlock();
         }
+        for (Runnable listener : tradeListeners) listener.run();
+    }
+
+    /**
+     * Prunes trades which are not retained anymore and hands them to the archive, must be called with write lock held.
+     */
+    private void prune() {
+        prune(true);
+    }
+
+    private void prune(boolean archive) {
+        if (trades.isEmpty()) return;
+        long newest = trades.timestamp(trades.nextSequence() - 1);
+        List<Trade> pruned = null;
+
+        while (!trades.isEmpty() && retentionPolicy.isExceeded(trades.size(), trades.timestamp(trades.firstSequence()), newest)) {
+            long sequence = trades.firstSequence();
+            retentionHorizon = trades.timestamp(sequence);
+            if (archive && tradeArchive != null) {
+                if (pruned == null) pruned = new ArrayList<>();
+                pruned.add(trades.trade(sequence));
+            }
+            trades.removeFirst();
+        }
+        // trades could still be in the window when retention is shorter than the window
+        if (windowStart < trades.firstSequence()) windowStart = trades.firstSequence();
+        if (pruned != null) tradeArchive.archive(Collections.unmodifiableList(pruned));
+    }
+
+    /**
+     * Returns the last trade.
+     *
+     * @return last trade or null if there have not been any trades done yet
+     */
+    public Trade getLastTrade() {
+        TradeStore.View view = trades.view();
+        return view.isEmpty() ? null : view.trade(view.next() - 1);
     }
 
     /**
      * Volume weighted stock price for this stock based on trades in last 5 minutes.
+     * Only retained trades are taken into account, see {@link #isRetainedSince(Instant)}.
      *
      * @return volume weighted stock price if there trades have been done in the last 5 minutes otherwise null
      */
     public BigDecimal getVolumeWeightedStockPrice() {
-        return this.getVolumeWeightedStockPrice(Instant.now().minusMillis(300_000));
+        long cutoff = now() - VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS;
+        // window start has to be read before the view, so it is not ahead of the view
+        long start = windowStart;
+        TradeStore.View view = trades.view();
+        start = windowStart(view, start, cutoff);
+        WideSum total = new WideSum();
+        return volumeWeightedStockPrice(total, view.sum(start, view.next(), total));
+    }
+
+    /**
+     * Returns when the volume weighted stock price for the last 5 minutes changes next without any trade being done,
+     * i.e. when the oldest trade of the window ages out.
+     *
+     * @param now epoch nanos
+     * @return epoch nanos or Long.MAX_VALUE if there are no trades in the window
+     */
+    long getWindowExpiry(long now) {
+        long start = windowStart;
+        TradeStore.View view = trades.view();
+        start = windowStart(view, start, now - VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS);
+        return start < view.next() ? view.timestamp(start) + VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns logarithm of the volume weighted stock price for the last 5 minutes, it is taken once after the window
+     * changes and shared by all callers, e.g. all indices the stock is a constituent of.
+     *
+     * @param now epoch nanos
+     * @return logarithm or NaN if there are no trades in the window
+     */
+    double getLogVolumeWeightedStockPrice(long now) {
+        long start = windowStart;
+        TradeStore.View view = trades.view();
+        start = windowStart(view, start, now - VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS);
+        FixedPoint fixedPoint = this.fixedPoint;
+        WindowPrice cached = windowPrice;
+        if (cached.start == start && cached.next == view.next() && cached.fixedPoint == fixedPoint) return cached.logPrice;
+        WideSum total = new WideSum();
+        BigDecimal price = volumeWeightedStockPrice(total, view.sum(start, view.next(), total), fixedPoint);
+        double logPrice = price != null ? Math.log(price.doubleValue()) : Double.NaN;
+        // racing callers take the same value, the last one wins
+        windowPrice = new WindowPrice(start, view.next(), fixedPoint, logPrice);
+        return logPrice;
+    }
+
+    /**
+     * Returns number of trades in the window of the volume weighted stock price as of now.
+     *
+     * @return number of trades
+     */
+    long getWindowSize() {
+        long now = now();
+        long start = windowStart;
+        TradeStore.View view = trades.view();
+        return view.next() - windowStart(view, start, now - VOLUME_WEIGHTED_STOCK_PRICE_WINDOW_NANOS);
+    }
+
+    private static long windowStart(TradeStore.View view, long start, long cutoff) {
+        start = Math.max(start, view.first());
+        // trades which have aged out since the last trade are only skipped, eviction is done on next trade
+        return start < view.next() && view.timestamp(start) < cutoff ? view.ceiling(cutoff) : start;
     }
 
     /**
      * Volume weighted stock price for this stock.
+     * Only retained trades are taken into account, see {@link #isRetainedSince(Instant)}.
      *
      * @param timestamp All trades after this timestamp will be used to calculate value.
      * @return volume weighted stock price if there trades have been done after the specified timestamp otherwise null
      */
     public BigDecimal getVolumeWeightedStockPrice(Instant timestamp) {
-        long quantity = 0;
-        BigDecimal total = BigDecimal.ZERO;
-        lock.readLock().lock();
+        long from = TradeStore.toEpochNanosBound(timestamp);
+        TradeStore.View view = trades.view();
+        WideSum total = new WideSum();
+        return volumeWeightedStockPrice(total, view.sum(view.ceiling(from), view.next(), total));
+    }
 
-        try {
-            ListIterator<Trade> it = trades.listIterator(trades.size());
+    /**
+     * Volume weighted stock price for this stock of trades done in the time range.
+     * Only retained trades are taken into account, see {@link #isRetainedSince(Instant)}.
+     *
+     * @param from timestamp trades are done at or after must be specified otherwise exception is thrown
+     * @param to timestamp trades are done before must be specified otherwise exception is thrown
+     * @return volume weighted stock price if trades have been done in the range otherwise null
+     */
+    public BigDecimal getVolumeWeightedStockPrice(Instant from, Instant to) {
+        return getStatistics(from, to).getVolumeWeightedPrice();
+    }
 
-            while (it.hasPrevious()) {
-                Trade trade = it.previous();
-                if (trade.getTimestamp().isBefore(timestamp)) break;
-                total = total.add(trade.getTotal());
-                quantity += trade.getQuantity();
-            }
-        } finally {
-            lock.readLock().unlock();
+    /**
+     * Returns number of trades, volume and volume weighted price of trades done in the time range. They are taken
+     * from sums kept with the trades, found by binary search, so it does not depend on the number of trades.
+     * Only retained trades are taken into account, see {@link #isRetainedSince(Instant)}.
+     *
+     * @param from timestamp trades are done at or after must be specified otherwise exception is thrown
+     * @param to timestamp trades are done before must be specified otherwise exception is thrown
+     * @return statistics of the range
+     */
+    public IntervalStatistics getStatistics(Instant from, Instant to) {
+        long fromNanos = TradeStore.toEpochNanosBound(from);
+        long toNanos = TradeStore.toEpochNanosBound(to);
+        if (fromNanos > toNanos) throw new IllegalArgumentException("From cannot be after to");
+        TradeStore.View view = trades.view();
+        long start = view.ceiling(fromNanos);
+        return intervalStatistics(from, to, view, start, view.ceiling(toNanos, start), new WideSum());
+    }
+
+    /**
+     * Returns statistics of consecutive intervals of the time range, e.g. of each minute of a trading day, all taken
+     * of the same trades. The last interval ends at the end of the range.
+     * Only retained trades are taken into account, see {@link #isRetainedSince(Instant)}.
+     *
+     * @param from timestamp trades are done at or after must be specified otherwise exception is thrown
+     * @param to timestamp trades are done before must be specified otherwise exception is thrown
+     * @param interval length of the intervals must be positive otherwise exception is thrown
+     * @return statistics of the intervals in the order of time
+     */
+    public List<IntervalStatistics> getStatistics(Instant from, Instant to, Duration interval) {
+        long fromNanos = TradeStore.toEpochNanosBound(from);
+        long toNanos = TradeStore.toEpochNanosBound(to);
+        if (fromNanos > toNanos) throw new IllegalArgumentException("From cannot be after to");
+        long length = toNanos(interval);
+        // the range can be longer than the largest long, e.g. from 1700 to 2200, but not than the largest unsigned one
+        long range = toNanos - fromNanos;
+        long count = Long.divideUnsigned(range, length) + (Long.remainderUnsigned(range, length) == 0 ? 0 : 1);
+        if (Long.compareUnsigned(count, Integer.MAX_VALUE) > 0) throw new IllegalArgumentException("Interval is too short for the range");
+        TradeStore.View view = trades.view();
+        WideSum total = new WideSum();
+        List<IntervalStatistics> statistics = new ArrayList<>((int) count);
+        Instant start = from;
+        long startSequence = view.ceiling(fromNanos);
+        for (long end = fromNanos; end < toNanos; ) {
+            end = Long.compareUnsigned(toNanos - end, length) <= 0 ? toNanos : end + length;
+            Instant endInstant = end == toNanos ? to : TradeStore.toInstant(end);
+            long endSequence = view.ceiling(end, startSequence);
+            statistics.add(intervalStatistics(start, endInstant, view, startSequence, endSequence, total));
+            start = endInstant;
+            startSequence = endSequence;
         }
-        return quantity != 0 ? total.divide(BigDecimal.valueOf(quantity), MathContext.DECIMAL128) : null;
+        return Collections.unmodifiableList(statistics);
+    }
+
+    private IntervalStatistics intervalStatistics(Instant from, Instant to, TradeStore.View view, long start, long end, WideSum total) {
+        long volume = view.sum(start, end, total);
+        return new IntervalStatistics(from, to, end - start, volume, volumeWeightedStockPrice(total, volume));
+    }
+
+    private BigDecimal volumeWeightedStockPrice(WideSum total, long quantity) {
+        return volumeWeightedStockPrice(total, quantity, fixedPoint);
+    }
+
+    private static BigDecimal volumeWeightedStockPrice(WideSum total, long quantity, FixedPoint fixedPoint) {
+        if (quantity == 0) return null;
+        return fixedPoint != null ? fixedPoint.divide(total.high(), total.low(), TradeStore.PRICE_SCALE, quantity)
+                : total.toBigDecimal(TradeStore.PRICE_SCALE).divide(BigDecimal.valueOf(quantity), MathContext.DECIMAL128);
+    }
+
+    /**
+     * Tells whether all trades done at or after the timestamp are retained, i.e. the timestamp is after the retention horizon.
+     *
+     * @param timestamp timestamp must be specified otherwise exception is thrown
+     * @return true if no trade done at or after the timestamp has been pruned
+     */
+    public boolean isRetainedSince(Instant timestamp) {
+        long horizon = retentionHorizon;
+        return horizon == NO_HORIZON || horizon < TradeStore.toEpochNanosBound(timestamp);
     }
 
     /**
-     * Returns trades of this stock.
+     * Returns retained trades of this stock, they are copied to a new list.
+     * Views returned by {@link #getTrades(Instant, Instant)}, {@link #getTradeCursor(long)} and
+     * {@link #getTradeSpliterator()} do not copy trades.
      *
-     * @return trades of this stock
+     * @return retained trades of this stock, see {@link #isRetainedSince(Instant)}
      */
     public List<Trade> getTrades() {
         // so the underlying collection of trades for this stock is not modified by external code
-        List<Trade> trades = new ArrayList<>();
-        lock.readLock().lock();
-        try {
-            trades.addAll(this.trades);
-
-        } finally {
-            lock.readLock().unlock();
+        TradeStore.View view = trades.view();
+        List<Trade> trades = new ArrayList<>((int) (view.next() - view.first()));
+        for (long sequence = view.first(); sequence < view.next(); sequence++) {
+            trades.add(view.trade(sequence));
         }
+        if (Metrics.isEnabled()) metrics.recordTradesCopied(trades.size());
         return trades;
     }
 
     /**
-     * PE ratio for this stock.
+     * Returns retained trades of this stock done in the time range. The list is a read-only view of the trades at the
+     * time of the call, trades are not copied, and trades done or pruned afterwards do not change it.
+     *
+     * @param from timestamp trades are done at or after must be specified otherwise exception is thrown
+     * @param to timestamp trades are done before must be specified otherwise exception is thrown
+     * @return read-only list of trades in the order of time
+     */
+    public List<Trade> getTrades(Instant from, Instant to) {
+        long fromNanos = TradeStore.toEpochNanosBound(from);
+        long toNanos = TradeStore.toEpochNanosBound(to);
+        if (fromNanos > toNanos) throw new IllegalArgumentException("From cannot be after to");
+        TradeStore.View view = trades.view();
+        return new TradeList(view, view.ceiling(fromNanos), view.ceiling(toNanos));
+    }
+
+    /**
+     * Returns cursor over retained trades of this stock starting from the oldest one.
+     *
+     * @return cursor
+     */
+    public TradeCursor getTradeCursor() {
+        return new TradeCursor(trades, trades.firstSequence());
+    }
+
+    /**
+     * Returns cursor over retained trades of this stock starting from the trade with the sequence number, e.g. where
+     * the previous cursor has stopped.
+     *
+     * @param sequence sequence number must not be less than zero otherwise exception is thrown
+     * @return cursor
+     */
+    public TradeCursor getTradeCursor(long sequence) {
+        if (sequence < 0) throw new IllegalArgumentException("Sequence cannot be less than 0");
+        return new TradeCursor(trades, sequence);
+    }
+
+    /**
+     * Returns spliterator over retained trades of this stock at the time of the call for bulk processing, e.g.
+     * {@code StreamSupport.stream(stock.getTradeSpliterator(), true)}. Trades are not copied and it splits evenly.
+     *
+     * @return spliterator of trades in the order of time
+     */
+    public Spliterator<Trade> getTradeSpliterator() {
+        TradeStore.View view = trades.view();
+        return new TradeSpliterator(view, view.first(), view.next());
+    }
+
+    /**
+     * PE ratio for this stock, it is calculated once per last trade.
      *
      * @return PE ratio or null if PE ratio cannot be evaluated (e.g. company has not paid dividend yet or there has been no trades yet)
      */
     public BigDecimal getPERatio() {
-        Trade trade = this.getLastTrade();
-        return getLastDividend() == 0 || trade == null ? null : trade.getPrice().divide(BigDecimal.valueOf(getLastDividend()), MathContext.DECIMAL128);
+        DerivedValues values = derivedValues;
+        BigDecimal peRatio = values.peRatio;
+        if (peRatio == NOT_CALCULATED) {
+            if (getLastDividend() == 0 || values.price == 0) peRatio = null;
+            else if (values.fixedPoint != null) peRatio = values.fixedPoint.divide(0, values.price, TradeStore.PRICE_SCALE, getLastDividend());
+            else peRatio = values.decimalPrice().divide(BigDecimal.valueOf(getLastDividend()), MathContext.DECIMAL128);
+            values.peRatio = peRatio;
+        }
+        return peRatio;
+    }
+
+    /**
+     * Returns dividend yield for this stock, it is calculated once per last trade.
+     *
+     * @return dividend yield for this stock if there have been trades done otherwise null
+     */
+    public BigDecimal getDividendYield() {
+        DerivedValues values = derivedValues;
+        BigDecimal dividendYield = values.dividendYield;
+        if (dividendYield == NOT_CALCULATED) {
+            if (values.price == 0) dividendYield = null;
+            else if (values.fixedPoint != null) dividendYield = calculateDividendYield(values.price, values.fixedPoint);
+            else dividendYield = calculateDividendYield(values.decimalPrice());
+            values.dividendYield = dividendYield;
+        }
+        return dividendYield;
+    }
+
+    /**
+     * Calculates dividend yield with BigDecimal arithmetic.
+     *
+     * @param price price of the last trade
+     * @return dividend yield
+     */
+    protected abstract BigDecimal calculateDividendYield(BigDecimal price);
+
+    /**
+     * Calculates dividend yield with fixed point arithmetic, by default the BigDecimal result is rounded to its scale.
+     *
+     * @param price fixed point price of the last trade with {@link TradeStore#PRICE_SCALE}
+     * @param fixedPoint fixed point arithmetic mode
+     * @return dividend yield with the scale of the mode
+     */
+    BigDecimal calculateDividendYield(long price, FixedPoint fixedPoint) {
+        return calculateDividendYield(BigDecimal.valueOf(price, TradeStore.PRICE_SCALE)).setScale(fixedPoint.getScale(), RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Sets arithmetic used for volume weighted stock price, PE ratio and dividend yield.
+     *
+     * @param fixedPoint fixed point arithmetic mode or null for BigDecimal arithmetic with {@link MathContext#DECIMAL128}, which is the default
+     */
+    public void setFixedPoint(FixedPoint fixedPoint) {
+        writeLock.lock();
+        try {
+            this.fixedPoint = fixedPoint;
+            DerivedValues values = derivedValues;
+            derivedValues = new DerivedValues(values.price, values.scale, fixedPoint);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns fixed point arithmetic mode.
+     *
+     * @return fixed point arithmetic mode or null if BigDecimal arithmetic is used
+     */
+    public FixedPoint getFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * Publishes price of the last trade in the store, so values derived from it are calculated again, must be called
+     * with write lock held.
+     */
+    private void publishLastTrade() {
+        if (trades.isEmpty()) return;
+        long last = trades.nextSequence() - 1;
+        derivedValues = new DerivedValues(trades.price(last), trades.scale(last), fixedPoint);
     }
 
+    /**
+     * Sets clock trades are timestamped with and windows end at, e.g. a {@link ReplayClock} to replay recorded trades.
+     * Trades are never timestamped before the last trade, even if the clock goes back.
+     *
+     * @param clock clock must be specified otherwise exception is thrown, the default is {@link Clock#systemUTC()}
+     */
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Returns clock trades are timestamped with.
+     *
+     * @return clock
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return epoch nanos of now by the clock
+     */
+    private long now() {
+        return TradeStore.toEpochNanos(clock.instant());
+    }
+
+    /**
+     * Returns metrics of this stock, they are recorded while {@link Metrics} are enabled.
+     *
+     * @return metrics of this stock
+     */
+    public StockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return view of retained trades at the time of the call
+     */
+    TradeStore.View getTradeView() {
+        return trades.view();
+    }
+
+    /**
+     * @return epoch nanos of the last trade of this stock, {@link Long#MIN_VALUE} if it has not been traded
+     */
+    long getLastTimestamp() {
+        writeLock.lock();
+        try {
+            return lastTimestamp;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return sequence number the next trade of this stock gets
+     */
+    long getNextSequence() {
+        return trades.nextSequence();
+    }
+
+    /**
+     * Returns stock symbol.
+     *
+     * @return stock symbol
+     */
+    public String getStockSymbol() { return stockSymbol; }
+
     /**
      * Returns last dividend for this stock.
      *
@@ -163,10 +1059,4 @@ public abstract class Stock {
         return parValue;
     }
 
-    /**
-     * Returns dividend yield for this stock.
-     *
-     * @return dividend yield
-     */
-    public abstract BigDecimal getDividendYield();
 }
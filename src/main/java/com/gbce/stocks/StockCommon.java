@@ -13,13 +13,16 @@ public class StockCommon extends Stock {
     }
 
     /**
-     * Returns dividend yield for this stock.
-     *
-     * @return dividend yield for this stock if there have been trades done otherwise null
+     * Dividend yield is last dividend / price.
      */
     @Override
-    public BigDecimal getDividendYield() {
-        Trade trade = this.getLastTrade();
-        return trade != null ? new BigDecimal(this.getLastDividend()).divide(trade.getPrice(), MathContext.DECIMAL128) : null;
+    protected BigDecimal calculateDividendYield(BigDecimal price) {
+        return new BigDecimal(this.getLastDividend()).divide(price, MathContext.DECIMAL128);
+    }
+
+    @Override
+    BigDecimal calculateDividendYield(long price, FixedPoint fixedPoint) {
+        // last dividend / (price * 10^-8)
+        return fixedPoint.divide(0, this.getLastDividend(), -TradeStore.PRICE_SCALE, price);
     }
 }
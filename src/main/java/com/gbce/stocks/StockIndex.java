@@ -1,14 +1,156 @@
 package com.gbce.stocks;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class StockIndex {
+public class StockIndex implements AutoCloseable {
+
+    /**
+     * Default number of constituents to evaluate at once from which they are evaluated in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 512;
+
+    // number of constituents evaluated sequentially by a fork-join task
+    private static final int TASK_SIZE = 64;
 
     private final String name;
-    private final Set<Stock> stocks;
+
+    // guarded by lock
+    private final Map<Stock, Constituent> constituents = new LinkedHashMap<>();
+
+    // constituents which have been traded since their volume weighted stock price was last taken
+    private final Queue<Constituent> changed = new ConcurrentLinkedQueue<>();
+
+    // constituents by the time their volume weighted stock price changes because trades age out, stale entries are skipped
+    private final PriorityQueue<Expiry> expiries = new PriorityQueue<>();
+
+    private final Lock lock = new ReentrantLock();
+
+    // sum of logarithms of volume weighted stock prices of constituents, with compensation for lost low-order bits
+    private double logSum;
+    private double logSumCompensation;
+    private int updatesSinceSummed;
+
+    private int tradedConstituents;
+
+    private int calculations;
+
+    private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    private volatile double value;
+
+    // epoch nanos of the earliest expiry
+    private volatile long nextExpiry = Long.MAX_VALUE;
+
+    private final List<IndexSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final StockIndexMetrics metrics = new StockIndexMetrics(this);
+
+    private volatile Clock clock = Clock.systemUTC();
+
+    // set when closed, constituents are not followed anymore
+    private volatile boolean closed;
+
+    private final class Constituent {
+
+        final Stock stock;
+
+        final AtomicBoolean changed = new AtomicBoolean(true);
+
+        final Runnable listener = () -> changed(this);
+
+        boolean traded;
+
+        // 0 when there is no volume weighted stock price
+        double logPrice;
+
+        // scheduled expiry
+        long expiry = Long.MAX_VALUE;
+
+        // calculation this constituent is evaluated by
+        int calculation;
+
+        // set when removed from the index, entries left in the queues are skipped then
+        boolean removed;
+
+        // values taken by evaluation, applied to the index afterwards
+        boolean evaluatedTraded;
+        double evaluatedLogPrice;
+        long evaluatedExpiry;
+
+        Constituent(Stock stock) {
+            this.stock = stock;
+        }
+    }
+
+    private static final class Expiry implements Comparable<Expiry> {
+
+        final Constituent constituent;
+
+        final long at;
+
+        Expiry(Constituent constituent, long at) {
+            this.constituent = constituent;
+            this.at = at;
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return Long.compare(at, other.at);
+        }
+    }
+
+    /**
+     * Evaluates constituents in parallel, reducing to the sum of changes of their logarithms.
+     */
+    private static final class Evaluation extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        final Constituent[] constituents;
+
+        final int from;
+
+        final int to;
+
+        final long now;
+
+        Evaluation(Constituent[] constituents, int from, int to, long now) {
+            this.constituents = constituents;
+            this.from = from;
+            this.to = to;
+            this.now = now;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= TASK_SIZE) return evaluate(constituents, from, to, now);
+            int middle = (from + to) >>> 1;
+            Evaluation left = new Evaluation(constituents, from, middle, now);
+            left.fork();
+            double right = new Evaluation(constituents, middle, to, now).compute();
+            return left.join() + right;
+        }
+    }
 
     /**
      * Creates new stock index.
@@ -21,31 +163,311 @@ public class StockIndex {
         Objects.requireNonNull(stocks);
         if (stocks.isEmpty()) throw new IllegalArgumentException("Stocks cannot be empty");
         this.name = name;
-        this.stocks = stocks;
+        for (Stock stock : stocks) addConstituent(Objects.requireNonNull(stock));
+    }
+
+    /**
+     * Adds stock to this index, it is taken into account by the next calculation.
+     *
+     * @param stock stock must be specified otherwise exception is thrown
+     * @return true if the stock has been added, false if it is in this index already
+     */
+    public boolean addStock(Stock stock) {
+        Objects.requireNonNull(stock);
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Index has been closed");
+            if (!addConstituent(stock)) return false;
+        } finally {
+            lock.unlock();
+        }
+        for (IndexSubscription subscription : subscriptions) subscription.signal();
+        return true;
+    }
+
+    private boolean addConstituent(Stock stock) {
+        if (constituents.containsKey(stock)) return false;
+        Constituent constituent = new Constituent(stock);
+        constituents.put(stock, constituent);
+        changed.add(constituent);
+        stock.addTradeListener(constituent.listener);
+        return true;
+    }
+
+    /**
+     * Removes stock from this index, the index is calculated without it from then on. When all stocks have been
+     * removed the index is 0.0.
+     *
+     * @param stock stock must be specified otherwise exception is thrown
+     * @return true if the stock has been removed, false if it is not in this index
+     */
+    public boolean removeStock(Stock stock) {
+        Objects.requireNonNull(stock);
+        lock.lock();
+        try {
+            Constituent constituent = constituents.remove(stock);
+            if (constituent == null) return false;
+            stock.removeTradeListener(constituent.listener);
+            constituent.removed = true;
+            // makes a scheduled expiry stale
+            constituent.expiry = Long.MAX_VALUE;
+            add(-constituent.logPrice);
+            if (constituent.traded) tradedConstituents--;
+            value = value();
+        } finally {
+            lock.unlock();
+        }
+        for (IndexSubscription subscription : subscriptions) subscription.signal();
+        return true;
+    }
+
+    /**
+     * Returns stocks in this index, they are copied to a new set.
+     *
+     * @return stocks in this index
+     */
+    public Set<Stock> getStocks() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableSet(new HashSet<>(constituents.keySet()));
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Calculates index using the geometric mean of the volume weighted stock price for stocks in this index.
+     * <p>
+     * The index keeps a running sum of logarithms of volume weighted stock prices, only constituents which have been
+     * traded or whose trades have aged out since the previous calculation are evaluated again.
      *
      * @return index value for stocks in this index that has been made trades of, return 0.0 if there has not been any trades for any stock yet
      */
     public double calculate() {
+        if (!Metrics.isEnabled()) return calculate(false);
+        long start = System.nanoTime();
+        double calculated = calculate(true);
+        metrics.recordCalculateLatency(System.nanoTime() - start);
+        return calculated;
+    }
+
+    private double calculate(boolean recorded) {
+        long now = TradeStore.toEpochNanos(clock.instant());
+        if (closed || changed.isEmpty() && now <= nextExpiry) return value;
+
+        lock.lock();
+        try {
+            int calculation = ++calculations;
+            List<Constituent> due = new ArrayList<>();
+            Constituent constituent;
+            while ((constituent = changed.poll()) != null) {
+                if (!constituent.removed && constituent.calculation != calculation) {
+                    constituent.calculation = calculation;
+                    due.add(constituent);
+                }
+            }
+            Expiry expiry;
+            while ((expiry = expiries.peek()) != null && expiry.at < now) {
+                expiries.poll();
+                constituent = expiry.constituent;
+                // an expiry is stale when the constituent has been updated since
+                if (expiry.at == constituent.expiry) {
+                    constituent.expiry = Long.MAX_VALUE;
+                    if (constituent.calculation != calculation) {
+                        constituent.calculation = calculation;
+                        due.add(constituent);
+                    }
+                }
+            }
+            if (!due.isEmpty()) update(due.toArray(new Constituent[0]), now);
+            if (recorded) metrics.recordEvaluatedConstituents(due.size());
+            nextExpiry = expiries.isEmpty() ? Long.MAX_VALUE : expiries.peek().at;
+            if (updatesSinceSummed > constituents.size()) sum();
+            value = value();
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns geometric mean of the running sum, must be called with lock held.
+     */
+    private double value() {
         // needed for a case edge when for example there two stocks in this stock index
         // and each of these two stocks have the volume weighted stock price equal to one
-        boolean volumeWeightedStockPriceExists = false;
-        BigDecimal indexValue = BigDecimal.ONE;
+        return tradedConstituents == 0 ? 0.0 : Math.exp(logSum / constituents.size());
+    }
+
+    private void changed(Constituent constituent) {
+        if (constituent.changed.compareAndSet(false, true)) changed.add(constituent);
+        for (IndexSubscription subscription : subscriptions) subscription.signal();
+    }
+
+    /**
+     * Subscribes to values of this index. A value is delivered when subscribed and after constituents have been
+     * traded, when it differs from the previous one. A subscriber which falls behind gets only the latest value.
+     * The subscription is completed when the index is closed.
+     *
+     * @param subscriber subscriber must be specified otherwise exception is thrown
+     * @param executor executor values are delivered on, one at a time, must be specified otherwise exception is thrown
+     */
+    public void subscribe(Subscriber<? super Double> subscriber, Executor executor) {
+        IndexSubscription subscription = new IndexSubscription(subscriber, executor);
+        subscriptions.add(subscription);
+        subscription.start();
+        if (closed) subscription.complete();
+    }
+
+    private final class IndexSubscription extends ConflatingSubscription<Double> {
+
+        private final AtomicBoolean pending = new AtomicBoolean(true);
+
+        private Double delivered;
+
+        IndexSubscription(Subscriber<? super Double> subscriber, Executor executor) {
+            super(subscriber, executor);
+        }
+
+        @Override
+        void signal() {
+            pending.set(true);
+            super.signal();
+        }
+
+        @Override
+        Double poll() {
+            if (!pending.getAndSet(false)) return null;
+            Double value = calculate();
+            if (value.equals(delivered)) return null;
+            delivered = value;
+            return value;
+        }
+
+        @Override
+        void onCancel() {
+            subscriptions.remove(this);
+        }
+    }
+
+    /**
+     * Sets how constituents are evaluated in parallel, when there are at least the threshold number of constituents
+     * to evaluate at once they are evaluated by fork-join tasks in the pool, otherwise by the calling thread.
+     *
+     * @param pool pool must be specified otherwise exception is thrown
+     * @param threshold threshold must be more than 0 otherwise exception is thrown, Integer.MAX_VALUE disables parallel evaluation
+     */
+    public void setParallelEvaluation(ForkJoinPool pool, int threshold) {
+        Objects.requireNonNull(pool);
+        if (threshold <= 0) throw new IllegalArgumentException("Threshold must be more than 0");
+        this.pool = pool;
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Takes volume weighted stock prices of the constituents again, must be called with lock held.
+     */
+    private void update(Constituent[] due, long now) {
+        double change = due.length >= parallelThreshold
+                ? pool.invoke(new Evaluation(due, 0, due.length, now))
+                : evaluate(due, 0, due.length, now);
+        add(change);
+        updatesSinceSummed += due.length;
+
+        for (Constituent constituent : due) {
+            if (constituent.evaluatedTraded && !constituent.traded) {
+                constituent.traded = true;
+                tradedConstituents++;
+            }
+            constituent.logPrice = constituent.evaluatedLogPrice;
+            // the expiry does not change while trades are added to a window which is not empty
+            long expiry = constituent.evaluatedExpiry;
+            if (expiry != constituent.expiry) {
+                constituent.expiry = expiry;
+                if (expiry != Long.MAX_VALUE) expiries.add(new Expiry(constituent, expiry));
+            }
+        }
+    }
 
-        for (Stock stock : stocks) {
+    /**
+     * Evaluates constituents without changing the index, so it can be done in parallel.
+     *
+     * @return sum of changes of logarithms of volume weighted stock prices
+     */
+    private static double evaluate(Constituent[] constituents, int from, int to, long now) {
+        double change = 0;
+        for (int i = from; i < to; i++) {
+            Constituent constituent = constituents[i];
+            constituent.changed.set(false);
             // no need to calculate if no trades have been done
-            if (stock.getLastTrade() != null) {
-                volumeWeightedStockPriceExists = true;
-                BigDecimal volumeWeightedStockPrice = stock.getVolumeWeightedStockPrice();
-                if (volumeWeightedStockPrice != null) {
-                    indexValue = indexValue.multiply(volumeWeightedStockPrice, MathContext.DECIMAL128);
-                }
+            constituent.evaluatedTraded = constituent.traded || constituent.stock.getNextSequence() > 0;
+            if (constituent.evaluatedTraded) {
+                // taken once per change of the window by whichever index asks first
+                double logPrice = constituent.stock.getLogVolumeWeightedStockPrice(now);
+                constituent.evaluatedLogPrice = Double.isNaN(logPrice) ? 0 : logPrice;
+                constituent.evaluatedExpiry = constituent.stock.getWindowExpiry(now);
+            } else {
+                constituent.evaluatedLogPrice = 0;
+                constituent.evaluatedExpiry = Long.MAX_VALUE;
             }
+            change += constituent.evaluatedLogPrice - constituent.logPrice;
+        }
+        return change;
+    }
+
+    /**
+     * Adds to the running sum with Kahan summation.
+     */
+    private void add(double value) {
+        double compensated = value - logSumCompensation;
+        double sum = logSum + compensated;
+        logSumCompensation = (sum - logSum) - compensated;
+        logSum = sum;
+    }
+
+    /**
+     * Sums logarithms again, so errors of adding and subtracting do not accumulate.
+     */
+    private void sum() {
+        logSum = 0;
+        logSumCompensation = 0;
+        for (Constituent constituent : constituents.values()) add(constituent.logPrice);
+        updatesSinceSummed = 0;
+    }
+
+    /**
+     * Sets clock trades of constituents age out by, it should be the clock of the constituents, e.g. a
+     * {@link ReplayClock} to replay recorded trades.
+     *
+     * @param clock clock must be specified otherwise exception is thrown, the default is {@link Clock#systemUTC()}
+     */
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Stops following trades of the stocks in this index and completes subscriptions, so the index is not referenced
+     * by its stocks anymore. The index keeps the value of the last calculation and stocks cannot be added to it.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Constituent constituent : constituents.values()) constituent.stock.removeTradeListener(constituent.listener);
+        } finally {
+            lock.unlock();
         }
-        return !volumeWeightedStockPriceExists ?  0.0 : Math.pow(indexValue.doubleValue(), 1.0/stocks.size());
+        for (IndexSubscription subscription : subscriptions) subscription.complete();
+    }
+
+    /**
+     * Returns metrics of this index, they are recorded while {@link Metrics} are enabled.
+     *
+     * @return metrics of this index
+     */
+    public StockIndexMetrics getMetrics() {
+        return metrics;
     }
 
     /**
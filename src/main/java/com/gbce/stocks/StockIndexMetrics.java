@@ -0,0 +1,50 @@
+package com.gbce.stocks;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a stock index, values are taken on each call.
+ */
+public final class StockIndexMetrics implements StockIndexMetricsMXBean {
+
+    private final StockIndex index;
+
+    private final LongAdder calculations = new LongAdder();
+
+    private final Histogram evaluatedConstituents = new Histogram();
+
+    private final Histogram calculateLatency = new Histogram();
+
+    StockIndexMetrics(StockIndex index) {
+        this.index = index;
+    }
+
+    void recordEvaluatedConstituents(int count) {
+        calculations.increment();
+        evaluatedConstituents.record(count);
+    }
+
+    void recordCalculateLatency(long nanos) {
+        calculateLatency.record(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return index.getName();
+    }
+
+    @Override
+    public long getCalculationCount() {
+        return calculations.sum();
+    }
+
+    @Override
+    public Histogram.Snapshot getEvaluatedConstituents() {
+        return evaluatedConstituents.getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getCalculateLatency() {
+        return calculateLatency.getSnapshot();
+    }
+}
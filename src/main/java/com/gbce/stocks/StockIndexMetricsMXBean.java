@@ -0,0 +1,27 @@
+package com.gbce.stocks;
+
+/**
+ * Metrics of a stock index, see {@link Metrics}.
+ */
+public interface StockIndexMetricsMXBean {
+
+    /**
+     * @return index name
+     */
+    String getName();
+
+    /**
+     * @return number of calculations which evaluated constituents again
+     */
+    long getCalculationCount();
+
+    /**
+     * @return number of constituents evaluated again by each calculation
+     */
+    Histogram.Snapshot getEvaluatedConstituents();
+
+    /**
+     * @return nanos each call to {@link StockIndex#calculate()} took, including calls which returned the previous value
+     */
+    Histogram.Snapshot getCalculateLatency();
+}
@@ -0,0 +1,69 @@
+package com.gbce.stocks;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a stock, values are taken on each call.
+ */
+public final class StockMetrics implements StockMetricsMXBean {
+
+    private final Stock stock;
+
+    private final LongAdder trades = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final Histogram lockWait = new Histogram();
+
+    private final Histogram tradesCopied = new Histogram();
+
+    StockMetrics(Stock stock) {
+        this.stock = stock;
+    }
+
+    void recordTrades(int count) {
+        trades.add(count);
+    }
+
+    void recordBatch() {
+        batches.increment();
+    }
+
+    void recordLockWait(long nanos) {
+        lockWait.record(nanos);
+    }
+
+    void recordTradesCopied(int count) {
+        tradesCopied.record(count);
+    }
+
+    @Override
+    public String getStockSymbol() {
+        return stock.getStockSymbol();
+    }
+
+    @Override
+    public long getTradeCount() {
+        return trades.sum();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public Histogram.Snapshot getLockWait() {
+        return lockWait.getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getTradesCopied() {
+        return tradesCopied.getSnapshot();
+    }
+
+    @Override
+    public long getWindowSize() {
+        return stock.getWindowSize();
+    }
+}
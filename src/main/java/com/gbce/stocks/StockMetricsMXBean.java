@@ -0,0 +1,37 @@
+package com.gbce.stocks;
+
+/**
+ * Metrics of a stock, see {@link Metrics}.
+ */
+public interface StockMetricsMXBean {
+
+    /**
+     * @return stock symbol
+     */
+    String getStockSymbol();
+
+    /**
+     * @return number of trades done, by single trades and batches
+     */
+    long getTradeCount();
+
+    /**
+     * @return number of batches of trades done
+     */
+    long getBatchCount();
+
+    /**
+     * @return nanos trades and batches waited for the lock of the stock
+     */
+    Histogram.Snapshot getLockWait();
+
+    /**
+     * @return number of trades copied by each call to {@link Stock#getTrades()}
+     */
+    Histogram.Snapshot getTradesCopied();
+
+    /**
+     * @return number of trades in the window of the volume weighted stock price, it is taken on each call
+     */
+    long getWindowSize();
+}
@@ -2,6 +2,7 @@ package com.gbce.stocks;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.Objects;
 
 public class StockPreferred extends Stock {
@@ -10,6 +11,12 @@ public class StockPreferred extends Stock {
 
     private final BigDecimal fixedDividend;
 
+    // fixed dividend / 100 * par value, exact
+    private final BigDecimal dividend;
+
+    // fixed dividend / 100 * par value with MathContext.DECIMAL128, as it has always been calculated for BigDecimal arithmetic
+    private final BigDecimal decimalDividend;
+
     /**
      * Creates preferred stock. This constructor takes additional parameter.
      *
@@ -20,19 +27,25 @@ public class StockPreferred extends Stock {
         super(stockSymbol, parValue, lastDividend);
         Objects.requireNonNull(fixedDividend);
         this.fixedDividend = fixedDividend;
+        this.dividend = fixedDividend.movePointLeft(2).multiply(BigDecimal.valueOf(parValue));
+        this.decimalDividend = fixedDividend.divide(PERCENT, MathContext.DECIMAL128)
+                .multiply(new BigDecimal(parValue), MathContext.DECIMAL128);
     }
 
     /**
-     * Returns dividend yield for this stock.
-     *
-     * @return dividend yield for this stock if there have been trades done otherwise null
+     * Dividend yield is fixed dividend / 100 * par value / price.
      */
     @Override
-    public BigDecimal getDividendYield() {
-        Trade lastTrade = this.getLastTrade();
-        return lastTrade == null ? null : this.getFixedDividend().divide(PERCENT, MathContext.DECIMAL128)
-                .multiply(new BigDecimal(this.getParValue()), MathContext.DECIMAL128)
-                .divide(lastTrade.getPrice(), MathContext.DECIMAL128);
+    protected BigDecimal calculateDividendYield(BigDecimal price) {
+        return decimalDividend.divide(price, MathContext.DECIMAL128);
+    }
+
+    @Override
+    BigDecimal calculateDividendYield(long price, FixedPoint fixedPoint) {
+        // dividend / (price * 10^-8), a negative dividend or one which does not fit in 64 bits gets the BigDecimal fallback
+        return dividend.signum() >= 0 && dividend.unscaledValue().bitLength() < Long.SIZE
+                ? fixedPoint.divide(0, dividend.unscaledValue().longValue(), dividend.scale() - TradeStore.PRICE_SCALE, price)
+                : dividend.movePointRight(TradeStore.PRICE_SCALE).divide(BigDecimal.valueOf(price), fixedPoint.getScale(), RoundingMode.HALF_EVEN);
     }
 
     /**
@@ -0,0 +1,149 @@
+package com.gbce.stocks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshot of retained trades of a stock in a compact binary file.
+ * <p>
+ * The file has a header (symbol, sequence numbers, number of journal records the snapshot covers and retention
+ * horizon) followed by columns of trades, the same columns the trade store keeps: timestamps, quantities, fixed point
+ * prices, scales, indicators and the running sums of quantity and price x quantity. Columns are written and read
+ * through memory mapping and copied to the trade store in bulk, nothing is recalculated. A snapshot is written to a
+ * temporary file which replaces the previous snapshot at once, so a crash never leaves a partial snapshot behind.
+ */
+final class StockSnapshot {
+
+    // "GBCESNP1"
+    private static final long MAGIC = 0x47424345534E5031L;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8 + 4 + 4 + 8 * 4;
+
+    // sizes of columns per trade
+    private static final int[] COLUMN_SIZES = {8, 8, 8, 1, 1, 8, 8, 8};
+
+    private static final int TRADE_SIZE = 50;
+
+    final String stockSymbol;
+
+    final long firstSequence;
+
+    final long nextSequence;
+
+    final long journalRecords;
+
+    final long retentionHorizon;
+
+    private final MappedByteBuffer[] columns;
+
+    private StockSnapshot(String stockSymbol, long firstSequence, long nextSequence, long journalRecords, long retentionHorizon,
+                          MappedByteBuffer[] columns) {
+        this.stockSymbol = stockSymbol;
+        this.firstSequence = firstSequence;
+        this.nextSequence = nextSequence;
+        this.journalRecords = journalRecords;
+        this.retentionHorizon = retentionHorizon;
+        this.columns = columns;
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long offset, int count) throws IOException {
+        MappedByteBuffer[] columns = new MappedByteBuffer[COLUMN_SIZES.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = channel.map(mode, offset, (long) COLUMN_SIZES[i] * count);
+            // the native order of common platforms, so columns are copied without swapping bytes
+            columns[i].order(ByteOrder.LITTLE_ENDIAN);
+            offset += (long) COLUMN_SIZES[i] * count;
+        }
+        return columns;
+    }
+
+    /**
+     * Writes snapshot of trades in the view, snapshots of the stock written concurrently do not share the temporary
+     * file, the last one moved replaces the others.
+     */
+    static void write(Path path, String stockSymbol, TradeStore.View view, long journalRecords, long retentionHorizon) throws IOException {
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        byte[] symbol = stockSymbol.getBytes(StandardCharsets.UTF_8);
+        int count = (int) (view.next() - view.first());
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + symbol.length);
+                header.putLong(MAGIC).putInt(VERSION).putInt(symbol.length)
+                        .putLong(view.first()).putLong(view.next()).putLong(journalRecords).putLong(retentionHorizon)
+                        .put(symbol).flip();
+                while (header.hasRemaining()) channel.write(header);
+
+                MappedByteBuffer[] columns = map(channel, FileChannel.MapMode.READ_WRITE, HEADER_SIZE + symbol.length, count);
+                for (long sequence = view.first(); sequence < view.next(); sequence++) {
+                    columns[0].putLong(view.timestamp(sequence));
+                    columns[1].putLong(view.quantity(sequence));
+                    columns[2].putLong(view.price(sequence));
+                    columns[3].put(view.scale(sequence));
+                    columns[4].put(view.indicator(sequence) == Trade.TradeIndicator.SELL ? (byte) 1 : (byte) 0);
+                    columns[5].putLong(view.cumulativeQuantity(sequence));
+                    columns[6].putLong(view.cumulativeNotionalHigh(sequence));
+                    columns[7].putLong(view.cumulativeNotionalLow(sequence));
+                }
+                for (MappedByteBuffer column : columns) column.force();
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads snapshot, trades are read when they are restored to a store.
+     *
+     * @throws IOException if the file cannot be read or it is not a snapshot
+     */
+    static StockSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // reads the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("File is not a stock snapshot");
+            }
+            byte[] symbol = new byte[header.getInt()];
+            long firstSequence = header.getLong();
+            long nextSequence = header.getLong();
+            long journalRecords = header.getLong();
+            long retentionHorizon = header.getLong();
+            ByteBuffer symbolBuffer = ByteBuffer.wrap(symbol);
+            while (symbolBuffer.hasRemaining() && channel.read(symbolBuffer) >= 0) {
+                // reads the whole symbol
+            }
+            long count = nextSequence - firstSequence;
+            if (symbolBuffer.hasRemaining() || count < 0 || count > Integer.MAX_VALUE
+                    || channel.size() < HEADER_SIZE + symbol.length + TRADE_SIZE * count) {
+                throw new IOException("Stock snapshot is damaged");
+            }
+            // mappings stay valid after the channel is closed
+            return new StockSnapshot(new String(symbol, StandardCharsets.UTF_8), firstSequence, nextSequence, journalRecords,
+                    retentionHorizon, map(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE + symbol.length, (int) count));
+        }
+    }
+
+    /**
+     * Adds trades of this snapshot to an empty store, with their sequence numbers.
+     */
+    void restore(TradeStore store) {
+        store.restore(firstSequence, (int) (nextSequence - firstSequence), columns[0].asLongBuffer(), columns[1].asLongBuffer(),
+                columns[2].asLongBuffer(), columns[3].duplicate(), columns[4].duplicate(), columns[5].asLongBuffer(),
+                columns[6].asLongBuffer(), columns[7].asLongBuffer());
+    }
+}
@@ -0,0 +1,140 @@
+package com.gbce.stocks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes snapshots of stocks to a directory in the background, a snapshot of a stock is named after its symbol.
+ * Stocks which have not been traded since their previous snapshot are skipped. Trades are not blocked meanwhile.
+ * <p>
+ * On restart each stock restores its snapshot with {@link #restore(Stock)} and then replays the tail of its journal
+ * with {@link Stock#setTradeJournal(TradeJournal)}.
+ */
+public final class StockSnapshotter implements AutoCloseable {
+
+    private static final String SUFFIX = ".snapshot";
+
+    private final Collection<Stock> stocks;
+
+    private final Path directory;
+
+    // sequence number following the last trade of the previous snapshot of each stock
+    private final Map<Stock, Long> snapshots = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private volatile Exception failure;
+
+    /**
+     * Creates snapshotter writing snapshots at fixed intervals.
+     *
+     * @param stocks stocks must be specified otherwise exception is thrown, e.g. stocks of an {@link Exchange}, stocks
+     *               added to the collection afterwards are taken into account, so it must be safe to iterate while
+     *               they are added, e.g. a concurrent collection
+     * @param directory directory snapshots are written to must be specified otherwise exception is thrown
+     * @param interval interval must be specified and must be positive otherwise exception is thrown
+     */
+    public StockSnapshotter(Collection<Stock> stocks, Path directory, Duration interval) {
+        Objects.requireNonNull(interval);
+        if (interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("Interval must be positive");
+        this.stocks = Objects.requireNonNull(stocks);
+        this.directory = Objects.requireNonNull(directory);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = interval.compareTo(Duration.ofNanos(Long.MAX_VALUE)) < 0 ? interval.toNanos() : Long.MAX_VALUE;
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+                failure = null;
+            } catch (IOException | RuntimeException e) {
+                // a failed snapshot is retried with the next one, the previous snapshot stays in place, an exception
+                // thrown out of the task would cancel the next ones
+                failure = e;
+            }
+        }, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Writes snapshots of stocks traded since their previous snapshot now, a stock whose snapshot cannot be written
+     * does not stop snapshots of the others.
+     *
+     * @throws IOException if a snapshot cannot be written, failures of other stocks are suppressed by it
+     * @throws IllegalArgumentException if symbol of a stock is not a file name
+     */
+    public void snapshot() throws IOException {
+        Exception failure = null;
+        for (Stock stock : stocks) {
+            long next = stock.getNextSequence();
+            Long previous = snapshots.get(stock);
+            if (previous != null && previous == next) continue;
+            try {
+                stock.writeSnapshot(path(stock));
+                snapshots.put(stock, next);
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure != null) throw (RuntimeException) failure;
+    }
+
+    /**
+     * Restores stock from its snapshot in the directory if there is one.
+     *
+     * @param stock stock must be specified otherwise exception is thrown
+     * @return true if the stock has been restored
+     * @throws IOException if the snapshot cannot be read
+     * @throws IllegalArgumentException if symbol of the stock is not a file name
+     */
+    public boolean restore(Stock stock) throws IOException {
+        Path path = path(Objects.requireNonNull(stock));
+        if (!Files.exists(path)) return false;
+        stock.restoreSnapshot(path);
+        snapshots.put(stock, stock.getNextSequence());
+        return true;
+    }
+
+    /**
+     * Returns failure of the last background snapshot.
+     *
+     * @return exception or null if the last background snapshot has not failed
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    private Path path(Stock stock) {
+        // a symbol with separators would name a file outside the directory
+        Path name = directory.getFileSystem().getPath(stock.getStockSymbol() + SUFFIX);
+        if (name.getRoot() != null || name.getNameCount() != 1) {
+            throw new IllegalArgumentException("Stock symbol " + stock.getStockSymbol() + " is not a file name");
+        }
+        return directory.resolve(name);
+    }
+
+    /**
+     * Stops background snapshots, a snapshot being written is completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Trades of a stock since the previous update together with current values derived from trades.
+ */
+public final class StockUpdate {
+
+    private final String stockSymbol;
+
+    private final List<Trade> trades;
+
+    private final long skippedTrades;
+
+    private final BigDecimal volumeWeightedStockPrice;
+
+    private final BigDecimal dividendYield;
+
+    StockUpdate(String stockSymbol, List<Trade> trades, long skippedTrades, BigDecimal volumeWeightedStockPrice, BigDecimal dividendYield) {
+        this.stockSymbol = stockSymbol;
+        this.trades = trades;
+        this.skippedTrades = skippedTrades;
+        this.volumeWeightedStockPrice = volumeWeightedStockPrice;
+        this.dividendYield = dividendYield;
+    }
+
+    public String getStockSymbol() { return stockSymbol; }
+
+    /**
+     * Returns trades done since the previous update, oldest first.
+     *
+     * @return unmodifiable list of trades
+     */
+    public List<Trade> getTrades() { return trades; }
+
+    /**
+     * Returns number of trades done since the previous update which are not delivered, because the subscriber
+     * has fallen behind by more than its buffer size or they have been pruned.
+     *
+     * @return number of skipped trades preceding the trades of this update
+     */
+    public long getSkippedTrades() { return skippedTrades; }
+
+    /**
+     * @return volume weighted stock price based on trades in last 5 minutes when the update is delivered or null
+     */
+    public BigDecimal getVolumeWeightedStockPrice() { return volumeWeightedStockPrice; }
+
+    /**
+     * @return dividend yield when the update is delivered or null
+     */
+    public BigDecimal getDividendYield() { return dividendYield; }
+}
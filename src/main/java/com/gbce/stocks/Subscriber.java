@@ -0,0 +1,36 @@
+package com.gbce.stocks;
+
+/**
+ * Receiver of updates, it mirrors java.util.concurrent.Flow.Subscriber which is not available on Java 8.
+ * Updates are delivered one at a time and only as many as requested through the subscription.
+ *
+ * @param <T> type of updates
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Called once when subscribed, before any update.
+     *
+     * @param subscription subscription to request updates with
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with an update.
+     *
+     * @param update update
+     */
+    void onNext(T update);
+
+    /**
+     * Called when the subscription has failed, no more updates are delivered.
+     *
+     * @param throwable cause
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called when the publisher has been closed, no more updates are delivered.
+     */
+    void onComplete();
+}
@@ -0,0 +1,19 @@
+package com.gbce.stocks;
+
+/**
+ * Subscription of a subscriber, it mirrors java.util.concurrent.Flow.Subscription which is not available on Java 8.
+ */
+public interface Subscription {
+
+    /**
+     * Requests more updates.
+     *
+     * @param n number of updates must be more than 0 otherwise subscription fails with IllegalArgumentException
+     */
+    void request(long n);
+
+    /**
+     * Cancels subscription, updates may still be delivered for a while.
+     */
+    void cancel();
+}
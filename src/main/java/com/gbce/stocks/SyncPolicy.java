@@ -0,0 +1,71 @@
+package com.gbce.stocks;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Tells when trades appended to a {@link TradeJournal} are forced to the storage device. Trades which have not been
+ * forced yet survive a crash of the process, but not of the operating system.
+ */
+public final class SyncPolicy {
+
+    private static final SyncPolicy PER_TRADE = new SyncPolicy(0);
+
+    private static final SyncPolicy PER_BATCH = new SyncPolicy(0);
+
+    // nanos, 0 when not periodic
+    private final long interval;
+
+    private SyncPolicy(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Sync policy forcing each trade before it is done.
+     *
+     * @return sync policy forcing every trade
+     */
+    public static SyncPolicy perTrade() {
+        return PER_TRADE;
+    }
+
+    /**
+     * Sync policy forcing trades done at once, i.e. a single buy or sell or a whole {@link TradeBatch}, before they are done.
+     *
+     * @return sync policy forcing every batch of trades
+     */
+    public static SyncPolicy perBatch() {
+        return PER_BATCH;
+    }
+
+    /**
+     * Sync policy forcing trades in the background at fixed intervals, trades of the last interval can be lost.
+     *
+     * @param interval interval must be specified and must be positive otherwise exception is thrown
+     * @return sync policy forcing trades periodically
+     */
+    public static SyncPolicy periodic(Duration interval) {
+        Objects.requireNonNull(interval);
+        if (interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("Interval must be positive");
+        return new SyncPolicy(interval.compareTo(Duration.ofNanos(Long.MAX_VALUE)) < 0 ? interval.toNanos() : Long.MAX_VALUE);
+    }
+
+    boolean isPerTrade() {
+        return this == PER_TRADE;
+    }
+
+    boolean isPerBatch() {
+        return this == PER_BATCH;
+    }
+
+    boolean isPeriodic() {
+        return interval > 0;
+    }
+
+    /**
+     * @return interval in nanos
+     */
+    long interval() {
+        return interval;
+    }
+}
@@ -0,0 +1,35 @@
+package com.gbce.stocks;
+
+/**
+ * Named sliding window over the most recent trades of a stock. It only keeps the sequence number of its oldest trade,
+ * which the writer moves forward as trades age out, sums over the window are differences of cumulative sums.
+ */
+final class TimeWindow {
+
+    final String name;
+
+    // nanos
+    final long length;
+
+    // sequence number of the oldest trade in the window as of the last trade
+    volatile long start;
+
+    TimeWindow(String name, long length, long start) {
+        this.name = name;
+        this.length = length;
+        this.start = start;
+    }
+
+    /**
+     * Moves the window past trades aged out as of the newest trade, must be called by the writer.
+     *
+     * @param trades trades of the stock
+     * @param newest epoch nanos of the newest trade
+     */
+    void evict(TradeStore trades, long newest) {
+        long cutoff = newest - length;
+        long start = Math.max(this.start, trades.firstSequence());
+        while (start < trades.nextSequence() && trades.timestamp(start) < cutoff) start++;
+        this.start = start;
+    }
+}
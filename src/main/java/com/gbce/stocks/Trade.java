@@ -19,11 +19,7 @@ public final class Trade {
     private final TradeIndicator indicator;
 
     public Trade(long quantity, BigDecimal price, Instant timestamp, TradeIndicator indicator) {
-        if (quantity <= 0) throw new IllegalArgumentException("Quantity cannot be less or equal to 0.");
-        Objects.requireNonNull(price);
-        if (BigDecimal.ZERO.equals(price) || price.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Price cannot be less or equal to 0.");
-        Objects.requireNonNull(timestamp);
-        Objects.requireNonNull(indicator);
+        validate(quantity, price, timestamp, indicator);
         this.quantity = quantity;
         this.price = price;
         this.total = price.multiply(BigDecimal.valueOf(quantity));
@@ -31,6 +27,24 @@ public final class Trade {
         this.indicator = indicator;
     }
 
+    /**
+     * Validates trade data, the same way trade is validated when created.
+     */
+    static void validate(long quantity, BigDecimal price, Instant timestamp, TradeIndicator indicator) {
+        validate(quantity, price);
+        Objects.requireNonNull(timestamp);
+        Objects.requireNonNull(indicator);
+    }
+
+    /**
+     * Validates quantity and price, the same way they are validated when trade is created.
+     */
+    static void validate(long quantity, BigDecimal price) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity cannot be less or equal to 0.");
+        Objects.requireNonNull(price);
+        if (BigDecimal.ZERO.equals(price) || price.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Price cannot be less or equal to 0.");
+    }
+
     public long getQuantity() {
         return quantity;
     }
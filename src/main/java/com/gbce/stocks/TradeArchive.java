@@ -0,0 +1,15 @@
+package com.gbce.stocks;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface TradeArchive {
+
+    /**
+     * Receives trades pruned from a stock according to its retention policy.
+     * It is called by the trading thread while the stock is locked, so it should hand trades off rather than do slow work.
+     *
+     * @param trades pruned trades, oldest first
+     */
+    void archive(List<Trade> trades);
+}
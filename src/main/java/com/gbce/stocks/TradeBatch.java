@@ -0,0 +1,146 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Trades to be done at once with {@link Stock#tradeBatch(TradeBatch)}, e.g. a burst of trades from an exchange feed.
+ * <p>
+ * Trades are validated the same way as a {@link Trade} when they are added, so a batch never holds bad trades, and
+ * they are kept as primitive values, no trade objects are created. Timestamps are given by the caller and must be in
+ * the order of time. A batch can be cleared and reused, it is not thread safe.
+ */
+public final class TradeBatch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+
+    private long[] quantities = new long[INITIAL_CAPACITY];
+
+    private long[] prices = new long[INITIAL_CAPACITY];
+
+    private byte[] scales = new byte[INITIAL_CAPACITY];
+
+    private Trade.TradeIndicator[] indicators = new Trade.TradeIndicator[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Adds buy of a number of shares at given price.
+     *
+     * @param quantity number of shares to buy
+     * @param price price, it cannot have more than 8 decimal places
+     * @param timestamp time of trade, it cannot be before the previous trade of this batch
+     * @return this batch
+     */
+    public TradeBatch buy(int quantity, BigDecimal price, Instant timestamp) {
+        return add(quantity, price, timestamp, Trade.TradeIndicator.BUY);
+    }
+
+    /**
+     * Adds sell of a number of shares at given price.
+     *
+     * @param quantity number of shares to sell
+     * @param price price, it cannot have more than 8 decimal places
+     * @param timestamp time of trade, it cannot be before the previous trade of this batch
+     * @return this batch
+     */
+    public TradeBatch sell(int quantity, BigDecimal price, Instant timestamp) {
+        return add(quantity, price, timestamp, Trade.TradeIndicator.SELL);
+    }
+
+    private TradeBatch add(int quantity, BigDecimal price, Instant timestamp, Trade.TradeIndicator indicator) {
+        Trade.validate(quantity, price, timestamp, indicator);
+        add(TradeStore.toEpochNanos(timestamp), quantity, TradeStore.toFixedPoint(price), TradeStore.toScale(price), indicator);
+        return this;
+    }
+
+    /**
+     * Adds trade of a validated quantity and price, e.g. a decoded one.
+     *
+     * @param timestamp epoch nanos, it cannot be before the previous trade of this batch otherwise exception is thrown
+     * @param price fixed point price with {@link TradeStore#PRICE_SCALE}
+     */
+    void add(long timestamp, long quantity, long price, byte scale, Trade.TradeIndicator indicator) {
+        if (size > 0 && timestamp < timestamps[size - 1]) throw new IllegalArgumentException("Timestamp cannot be before the previous trade");
+        if (size == timestamps.length) grow();
+        timestamps[size] = timestamp;
+        quantities[size] = quantity;
+        prices[size] = price;
+        scales[size] = scale;
+        indicators[size++] = indicator;
+    }
+
+    private void grow() {
+        int capacity = size << 1;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        scales = Arrays.copyOf(scales, capacity);
+        indicators = Arrays.copyOf(indicators, capacity);
+    }
+
+    /**
+     * Removes all trades, so the batch can be reused.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns number of trades.
+     *
+     * @return number of trades in this batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return epoch nanos of the trade
+     */
+    long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    long quantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * @return fixed point price with {@link TradeStore#PRICE_SCALE}
+     */
+    long price(int index) {
+        return prices[index];
+    }
+
+    byte scale(int index) {
+        return scales[index];
+    }
+
+    Trade.TradeIndicator indicator(int index) {
+        return indicators[index];
+    }
+
+    /**
+     * Appends the trades to the journal, it must be called by the single writer of the journal.
+     */
+    void appendTo(TradeJournal journal) {
+        // a batch which cannot be appended in full is not appended at all
+        journal.reserve(size);
+        for (int i = 0; i < size; i++) journal.append(timestamps[i], quantities[i], prices[i], scales[i], indicators[i]);
+    }
+
+    /**
+     * Adds the trades to the store, it must be called by the single writer of the store.
+     */
+    void addTo(TradeStore store) {
+        for (int i = 0; i < size; i++) store.add(timestamps[i], quantities[i], prices[i], scales[i], indicators[i]);
+    }
+}
@@ -0,0 +1,251 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Compact fixed layout binary format of trades, for network transfer and file export.
+ * <p>
+ * A trade is {@value #TRADE_SIZE} bytes: epoch nanos of the timestamp (8 bytes), quantity (8 bytes), price with 8
+ * decimal places (8 bytes), number of decimal places the price has been given with (1 byte) and indicator, 0 for buy
+ * and 1 for sell (1 byte). A batch of trades of a stock is a header, the magic number {@code GBTB} (4 bytes), the
+ * version (1 byte), the length of the UTF-8 stock symbol (1 byte), the stock symbol and the number of trades
+ * (4 bytes), followed by the trades.
+ * <p>
+ * Numbers are big-endian whatever the order of the buffer is, heap and direct buffers are read and written in place
+ * from their position, which is moved past the bytes read or written. Trades of a stock or a batch are encoded from
+ * and decoded to primitive columns, without creating trades.
+ */
+public final class TradeCodec {
+
+    /**
+     * Size of an encoded trade in bytes.
+     */
+    public static final int TRADE_SIZE = 26;
+
+    private static final int MAGIC = 0x47425442;
+
+    private static final byte VERSION = 1;
+
+    private static final int MAX_SYMBOL_LENGTH = 255;
+
+    static final int MAX_HEADER_SIZE = 10 + MAX_SYMBOL_LENGTH;
+
+    // fixed point value of the last digit of a price by number of decimal places not given, up to the largest power
+    // of 10 a long holds, prices of scales below have no digit a long can hold
+    private static final long[] UNITS = new long[19];
+
+    static {
+        UNITS[0] = 1;
+        for (int i = 1; i < UNITS.length; i++) UNITS[i] = UNITS[i - 1] * 10;
+    }
+
+    private TradeCodec() {
+    }
+
+    /**
+     * Returns size of an encoded batch.
+     *
+     * @param stockSymbol stock symbol must be specified otherwise exception is thrown
+     * @param numberOfTrades number of trades must not be less than 0 otherwise exception is thrown
+     * @return size in bytes
+     * @throws IllegalArgumentException if the batch is larger than a buffer can be
+     */
+    public static int batchSize(String stockSymbol, int numberOfTrades) {
+        if (numberOfTrades < 0) throw new IllegalArgumentException("Number of trades cannot be negative");
+        long size = headerSize(symbolBytes(stockSymbol)) + (long) numberOfTrades * TRADE_SIZE;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Batch of " + numberOfTrades + " trades is larger than a buffer can be");
+        return (int) size;
+    }
+
+    /**
+     * Encodes trade.
+     *
+     * @param trade trade must be specified otherwise exception is thrown
+     * @param buffer buffer must be specified otherwise exception is thrown
+     * @throws BufferOverflowException if there are fewer than {@link #TRADE_SIZE} bytes remaining
+     */
+    public static void encode(Trade trade, ByteBuffer buffer) {
+        Objects.requireNonNull(trade);
+        if (buffer.remaining() < TRADE_SIZE) throw new BufferOverflowException();
+        putTrade(buffer, TradeStore.toEpochNanos(trade.getTimestamp()), trade.getQuantity(),
+                TradeStore.toFixedPoint(trade.getPrice()), TradeStore.toScale(trade.getPrice()), trade.getIndicator());
+    }
+
+    /**
+     * Decodes trade.
+     *
+     * @param buffer buffer must be specified otherwise exception is thrown
+     * @return trade
+     * @throws BufferUnderflowException if there are fewer than {@link #TRADE_SIZE} bytes remaining
+     * @throws IllegalArgumentException if the bytes are not a valid trade
+     */
+    public static Trade decode(ByteBuffer buffer) {
+        if (buffer.remaining() < TRADE_SIZE) throw new BufferUnderflowException();
+        long timestamp = getLong(buffer);
+        long quantity = getLong(buffer);
+        long price = getLong(buffer);
+        byte scale = buffer.get();
+        Trade.TradeIndicator indicator = indicator(buffer.get());
+        validate(quantity, price, scale);
+        return new Trade(quantity, BigDecimal.valueOf(price, TradeStore.PRICE_SCALE).setScale(scale),
+                TradeStore.toInstant(timestamp), indicator);
+    }
+
+    /**
+     * Encodes retained trades of the stock from the sequence number on as a batch, as many as fit in the buffer.
+     *
+     * @param stock stock must be specified otherwise exception is thrown
+     * @param sequence sequence number of the first trade, trades which have been pruned are skipped
+     * @param buffer buffer must be specified otherwise exception is thrown
+     * @return sequence number of the first trade not encoded, to encode the next batch from
+     * @throws BufferOverflowException if the header does not fit in the buffer
+     */
+    public static long encode(Stock stock, long sequence, ByteBuffer buffer) {
+        byte[] symbol = symbolBytes(stock.getStockSymbol());
+        if (buffer.remaining() < headerSize(symbol)) throw new BufferOverflowException();
+        TradeStore.View view = stock.getTradeView();
+        long from = Math.max(sequence, view.first());
+        int count = (int) Math.max(0, Math.min(view.next() - from, (buffer.remaining() - headerSize(symbol)) / TRADE_SIZE));
+        putHeader(buffer, symbol, count);
+        for (long i = from; i < from + count; i++) {
+            putTrade(buffer, view.timestamp(i), view.quantity(i), view.price(i), view.scale(i), view.indicator(i));
+        }
+        return from + count;
+    }
+
+    /**
+     * Encodes trades of the batch.
+     *
+     * @param stockSymbol symbol of the stock traded must be specified otherwise exception is thrown
+     * @param batch batch must be specified otherwise exception is thrown
+     * @param buffer buffer must be specified otherwise exception is thrown
+     * @throws BufferOverflowException if the batch does not fit in the buffer, nothing is written then
+     */
+    public static void encode(String stockSymbol, TradeBatch batch, ByteBuffer buffer) {
+        byte[] symbol = symbolBytes(stockSymbol);
+        if (buffer.remaining() < headerSize(symbol) + (long) batch.size() * TRADE_SIZE) throw new BufferOverflowException();
+        putHeader(buffer, symbol, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            putTrade(buffer, batch.timestamp(i), batch.quantity(i), batch.price(i), batch.scale(i), batch.indicator(i));
+        }
+    }
+
+    /**
+     * Decodes batch of trades, they are added to the trade batch, e.g. to be done by {@link Stock#tradeBatch(TradeBatch)}.
+     *
+     * @param buffer buffer must be specified otherwise exception is thrown
+     * @param batch batch trades are added to must be specified otherwise exception is thrown
+     * @return symbol of the stock traded
+     * @throws BufferUnderflowException if the buffer ends before the batch, the position is not moved then, so the
+     *                                  batch can be decoded once the rest of it has been read into the buffer
+     * @throws IllegalArgumentException if the bytes are not a valid batch, trades decoded before the invalid one
+     *                                  have been added
+     */
+    public static String decode(ByteBuffer buffer, TradeBatch batch) {
+        Objects.requireNonNull(batch);
+        if (buffer.remaining() < batchLength(buffer)) throw new BufferUnderflowException();
+        checkVersion(buffer);
+        byte[] symbol = new byte[buffer.get() & 0xFF];
+        buffer.get(symbol);
+        int count = getInt(buffer);
+        for (int i = 0; i < count; i++) {
+            long timestamp = getLong(buffer);
+            long quantity = getLong(buffer);
+            long price = getLong(buffer);
+            byte scale = buffer.get();
+            Trade.TradeIndicator indicator = indicator(buffer.get());
+            validate(quantity, price, scale);
+            batch.add(timestamp, quantity, price, scale, indicator);
+        }
+        return new String(symbol, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns size of the encoded batch at the position of the buffer, the position is not moved.
+     *
+     * @throws BufferUnderflowException if the buffer ends before the header
+     * @throws IllegalArgumentException if the bytes are not a valid header
+     */
+    static long batchLength(ByteBuffer buffer) {
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < 10) throw new BufferUnderflowException();
+        checkVersion(header);
+        int symbolLength = header.get() & 0xFF;
+        if (header.remaining() < symbolLength + 4) throw new BufferUnderflowException();
+        header.position(header.position() + symbolLength);
+        int count = getInt(header);
+        if (count < 0) throw new IllegalArgumentException("Number of trades cannot be negative");
+        return 10 + symbolLength + (long) count * TRADE_SIZE;
+    }
+
+    private static void checkVersion(ByteBuffer buffer) {
+        if (getInt(buffer) != MAGIC) throw new IllegalArgumentException("Not a batch of trades");
+        byte version = buffer.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported version " + version);
+    }
+
+    private static byte[] symbolBytes(String stockSymbol) {
+        byte[] symbol = stockSymbol.getBytes(StandardCharsets.UTF_8);
+        if (symbol.length > MAX_SYMBOL_LENGTH) throw new IllegalArgumentException("Stock symbol cannot be longer than " + MAX_SYMBOL_LENGTH + " bytes");
+        return symbol;
+    }
+
+    private static int headerSize(byte[] symbol) {
+        return 4 + 1 + 1 + symbol.length + 4;
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte[] symbol, int count) {
+        putInt(buffer, MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte) symbol.length);
+        buffer.put(symbol);
+        putInt(buffer, count);
+    }
+
+    private static void putTrade(ByteBuffer buffer, long timestamp, long quantity, long price, byte scale, Trade.TradeIndicator indicator) {
+        putLong(buffer, timestamp);
+        putLong(buffer, quantity);
+        putLong(buffer, price);
+        buffer.put(scale);
+        buffer.put((byte) indicator.ordinal());
+    }
+
+    private static void validate(long quantity, long price, byte scale) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity cannot be less or equal to 0.");
+        if (price <= 0) throw new IllegalArgumentException("Price cannot be less or equal to 0.");
+        // prices are stored with their scale, which can exceed the fixed point decimal places or be negative
+        int unit = TradeStore.PRICE_SCALE - scale;
+        if (unit > 0 && (unit >= UNITS.length || price % UNITS[unit] != 0))
+            throw new IllegalArgumentException("Price cannot have more decimal places than its scale");
+    }
+
+    private static Trade.TradeIndicator indicator(byte value) {
+        if (value == 0) return Trade.TradeIndicator.BUY;
+        if (value == 1) return Trade.TradeIndicator.SELL;
+        throw new IllegalArgumentException("Unknown indicator " + value);
+    }
+
+    private static void putLong(ByteBuffer buffer, long value) {
+        buffer.putLong(buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
+    }
+
+    private static long getLong(ByteBuffer buffer) {
+        long value = buffer.getLong();
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+    }
+
+    private static void putInt(ByteBuffer buffer, int value) {
+        buffer.putInt(buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value));
+    }
+
+    private static int getInt(ByteBuffer buffer) {
+        int value = buffer.getInt();
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value);
+    }
+}
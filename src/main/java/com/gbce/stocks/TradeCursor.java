@@ -0,0 +1,59 @@
+package com.gbce.stocks;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor over trades of a stock by sequence number, every trade of a stock gets the next sequence number starting
+ * from 0. The cursor follows trades done after it has been created, so it can be read page by page and a new cursor
+ * can resume where the previous one has stopped, see {@link #getSequence()}. Trades which have been pruned before
+ * they are read are skipped.
+ * <p>
+ * A cursor takes no locks and does not copy trades, it is not thread safe.
+ */
+public final class TradeCursor implements Iterator<Trade> {
+
+    private final TradeStore trades;
+
+    private TradeStore.View view;
+
+    private long sequence;
+
+    TradeCursor(TradeStore trades, long sequence) {
+        this.trades = trades;
+        this.view = trades.view();
+        this.sequence = sequence;
+    }
+
+    /**
+     * Tells whether there is a trade to read, trades done since the previous call are taken into account.
+     *
+     * @return true if there is a trade to read
+     */
+    @Override
+    public boolean hasNext() {
+        if (sequence >= view.next()) view = trades.view();
+        if (sequence < view.first()) sequence = view.first();
+        return sequence < view.next();
+    }
+
+    /**
+     * Reads the next trade.
+     *
+     * @return trade with the sequence number returned by {@link #getSequence()} before the call, unless it has been pruned
+     */
+    @Override
+    public Trade next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return view.trade(sequence++);
+    }
+
+    /**
+     * Returns sequence number of the next trade to read.
+     *
+     * @return sequence number to resume from
+     */
+    public long getSequence() {
+        return sequence;
+    }
+}
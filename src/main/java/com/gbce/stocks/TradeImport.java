@@ -0,0 +1,592 @@
+package com.gbce.stocks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Imports historical trades from a file into stocks, at the times they have been done.
+ * <p>
+ * The file is memory-mapped and split into chunks, which are parsed in parallel into primitive columns per stock.
+ * Once the whole file has been parsed, trades of each stock are sorted by time where they are not in order and done
+ * with {@link Stock#tradeBatch(TradeBatch)}, stocks in parallel. A file which cannot be parsed is not imported at
+ * all, nor is a file with trades of a stock done before its last trade.
+ * <p>
+ * Trades of a stock are done in batches, so the lock of the stock is not held for the whole import. An import can
+ * therefore be partial if a stock is traded by others during the import or its journal cannot be written: batches
+ * done before the one rejected are kept, and so are trades of other stocks. Stocks which have not started loading are
+ * skipped, and the import throws once stocks which have started have stopped.
+ * <p>
+ * A CSV file has the format of a {@link TradeReplay} recording, a binary file is a sequence of batches encoded by
+ * {@link TradeCodec}.
+ */
+public final class TradeImport {
+
+    /**
+     * Default number of bytes of the file parsed by a task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    // longest line read past the end of a chunk
+    private static final int MAX_LINE_LENGTH = 1_024;
+
+    // size of the windows of a binary file headers of batches are read from
+    private static final int SCAN_WINDOW_SIZE = 64 << 20;
+
+    // number of trades done at once, so the lock of a stock is not held for the whole import
+    private static final int LOAD_BATCH_SIZE = 65_536;
+
+    private final Map<String, Stock> stocks = new HashMap<>();
+
+    private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Trades of a stock in primitive columns, in the order they have been parsed.
+     */
+    private static final class Columns {
+
+        long[] timestamps = new long[16];
+        long[] quantities = new long[16];
+        long[] prices = new long[16];
+        byte[] scales = new byte[16];
+        boolean[] sells = new boolean[16];
+        int size;
+
+        void add(long timestamp, long quantity, long price, byte scale, boolean sell) {
+            if (size == timestamps.length) grow(size * 2);
+            timestamps[size] = timestamp;
+            quantities[size] = quantity;
+            prices[size] = price;
+            scales[size] = scale;
+            sells[size++] = sell;
+        }
+
+        void addAll(Columns other) {
+            if (size + other.size > timestamps.length) grow(Math.max(size + other.size, size * 2));
+            System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+            System.arraycopy(other.quantities, 0, quantities, size, other.size);
+            System.arraycopy(other.prices, 0, prices, size, other.size);
+            System.arraycopy(other.scales, 0, scales, size, other.size);
+            System.arraycopy(other.sells, 0, sells, size, other.size);
+            size += other.size;
+        }
+
+        private void grow(int capacity) {
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            sells = Arrays.copyOf(sells, capacity);
+        }
+
+        long first() {
+            long first = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) first = Math.min(first, timestamps[i]);
+            return first;
+        }
+
+        boolean isSorted() {
+            for (int i = 1; i < size; i++) if (timestamps[i] < timestamps[i - 1]) return false;
+            return true;
+        }
+
+        /**
+         * Sorts by timestamp, trades done at the same time are kept in the order they have been parsed.
+         */
+        void sort() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            mergeSort(order, new int[size], 0, size);
+            long[] timestamps = new long[size];
+            long[] quantities = new long[size];
+            long[] prices = new long[size];
+            byte[] scales = new byte[size];
+            boolean[] sells = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                int from = order[i];
+                timestamps[i] = this.timestamps[from];
+                quantities[i] = this.quantities[from];
+                prices[i] = this.prices[from];
+                scales[i] = this.scales[from];
+                sells[i] = this.sells[from];
+            }
+            this.timestamps = timestamps;
+            this.quantities = quantities;
+            this.prices = prices;
+            this.scales = scales;
+            this.sells = sells;
+        }
+
+        private void mergeSort(int[] order, int[] buffer, int from, int to) {
+            if (to - from < 2) return;
+            int middle = (from + to) >>> 1;
+            mergeSort(order, buffer, from, middle);
+            mergeSort(order, buffer, middle, to);
+            if (timestamps[order[middle - 1]] <= timestamps[order[middle]]) return;
+            System.arraycopy(order, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right == to || left < middle && timestamps[buffer[left]] <= timestamps[buffer[right]]) order[i] = buffer[left++];
+                else order[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Trades parsed from a chunk.
+     */
+    private static final class Chunk {
+
+        final Map<Stock, Columns> trades = new LinkedHashMap<>();
+
+        final long bytes;
+
+        long count;
+
+        Chunk(long bytes) {
+            this.bytes = bytes;
+        }
+
+        Columns columns(Stock stock) {
+            return trades.computeIfAbsent(stock, s -> new Columns());
+        }
+    }
+
+    /**
+     * Bytes of a line of a mapped chunk as characters, reused for every line.
+     */
+    private static final class Line implements CharSequence {
+
+        ByteBuffer buffer;
+
+        int offset;
+
+        int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return substring(start, end);
+        }
+
+        String substring(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(offset + start + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return substring(0, length);
+        }
+    }
+
+    /**
+     * Creates import of trades of the stocks.
+     *
+     * @param stocks stocks must be specified otherwise exception is thrown
+     */
+    public TradeImport(Collection<Stock> stocks) {
+        Objects.requireNonNull(stocks);
+        for (Stock stock : stocks) this.stocks.put(stock.getStockSymbol(), stock);
+    }
+
+    /**
+     * Sets how the file is parsed in parallel, chunks of the size are parsed by tasks in the pool.
+     *
+     * @param pool pool must be specified otherwise exception is thrown, the default is the common pool
+     * @param chunkSize chunk size in bytes must be more than 0 otherwise exception is thrown
+     */
+    public void setParallelism(ForkJoinPool pool, int chunkSize) {
+        Objects.requireNonNull(pool);
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be more than 0");
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports trades from a CSV file.
+     *
+     * @param file file must be specified otherwise exception is thrown
+     * @return progress of the completed import
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line cannot be parsed or it is of a stock which is not imported
+     */
+    public ImportProgress importCsv(Path file) throws IOException {
+        return importCsv(file, progress -> {
+        });
+    }
+
+    /**
+     * Imports trades from a CSV file, reporting progress to the listener on the calling thread.
+     *
+     * @param file file must be specified otherwise exception is thrown
+     * @param listener listener must be specified otherwise exception is thrown
+     * @return progress of the completed import
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line cannot be parsed or it is of a stock which is not imported
+     */
+    public ImportProgress importCsv(Path file, Consumer<? super ImportProgress> listener) throws IOException {
+        Objects.requireNonNull(listener);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkSize = this.chunkSize;
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            for (long from = 0; from < size; from += chunkSize) tasks.add(submitCsv(channel, from, Math.min(size, from + chunkSize), size));
+            return load(join(tasks, size, start, listener), size, start, listener);
+        }
+    }
+
+    /**
+     * Imports trades from a file of batches encoded by {@link TradeCodec}.
+     *
+     * @param file file must be specified otherwise exception is thrown
+     * @return progress of the completed import
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a batch cannot be decoded or it is of a stock which is not imported
+     */
+    public ImportProgress importBinary(Path file) throws IOException {
+        return importBinary(file, progress -> {
+        });
+    }
+
+    /**
+     * Imports trades from a file of batches encoded by {@link TradeCodec}, reporting progress to the listener on the
+     * calling thread.
+     *
+     * @param file file must be specified otherwise exception is thrown
+     * @param listener listener must be specified otherwise exception is thrown
+     * @return progress of the completed import
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a batch cannot be decoded or it is of a stock which is not imported
+     */
+    public ImportProgress importBinary(Path file, Consumer<? super ImportProgress> listener) throws IOException {
+        Objects.requireNonNull(listener);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkSize = this.chunkSize;
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            long from = 0;
+            long position = 0;
+            // chunks end at batches, which are found by reading their headers from a mapped window of the file
+            long windowStart = 0;
+            ByteBuffer window = ByteBuffer.allocate(0);
+            while (position < size) {
+                if (position + TradeCodec.MAX_HEADER_SIZE > windowStart + window.limit() && windowStart + window.limit() < size) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, SCAN_WINDOW_SIZE));
+                }
+                window.position((int) (position - windowStart));
+                long length;
+                try {
+                    length = TradeCodec.batchLength(window);
+                } catch (BufferUnderflowException e) {
+                    throw new IllegalArgumentException("Batch at byte " + position + " is truncated");
+                }
+                if (position + length > size) throw new IllegalArgumentException("Batch at byte " + position + " is truncated");
+                if (position > from && position + length - from > chunkSize) {
+                    tasks.add(submitBinary(channel, from, position));
+                    from = position;
+                }
+                position += length;
+            }
+            if (position > from) tasks.add(submitBinary(channel, from, position));
+            return load(join(tasks, size, start, listener), size, start, listener);
+        }
+    }
+
+    private ForkJoinTask<Chunk> submitCsv(FileChannel channel, long from, long to, long size) throws IOException {
+        // the line a chunk ends in is parsed by that chunk, so the mapping extends past its end, and it starts at the
+        // byte before the chunk to tell whether the chunk starts with a line
+        long mapFrom = Math.max(0, from - 1);
+        long mapTo = Math.min(size, to + MAX_LINE_LENGTH);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+        return pool.submit(() -> parseCsv(buffer, (int) (from - mapFrom), (int) (to - mapFrom), from, mapTo == size));
+    }
+
+    private ForkJoinTask<Chunk> submitBinary(FileChannel channel, long from, long to) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        return pool.submit(() -> parseBinary(buffer, from));
+    }
+
+    /**
+     * Parses lines which start in the chunk.
+     *
+     * @param buffer mapping of the chunk, the byte before it and bytes of the line it ends in
+     * @param from offset of the chunk in the buffer
+     * @param to offset of the end of the chunk in the buffer
+     * @param position position of the chunk in the file
+     * @param endOfFile whether the buffer is mapped to the end of the file
+     */
+    private Chunk parseCsv(ByteBuffer buffer, int from, int to, long position, boolean endOfFile) {
+        int offset = from;
+        // a line which has started in the previous chunk is parsed by that chunk
+        if (from > 0 && buffer.get(from - 1) != '\n') {
+            while (offset < buffer.limit() && buffer.get(offset) != '\n') offset++;
+            offset++;
+        }
+        Chunk chunk = new Chunk(to - from);
+        Line line = new Line();
+        line.buffer = buffer;
+        Stock stock = null;
+        while (offset < to) {
+            int end = offset;
+            while (end < buffer.limit() && buffer.get(end) != '\n') end++;
+            if (end == buffer.limit() && !endOfFile) {
+                throw new IllegalArgumentException("Line at byte " + (position + offset - from) + " is longer than " + MAX_LINE_LENGTH + " bytes");
+            }
+            int length = end - offset;
+            if (length > 0 && buffer.get(end - 1) == '\r') length--;
+            if (length > 0) {
+                line.offset = offset;
+                line.length = length;
+                stock = parseLine(line, stock, chunk, position + offset - from);
+                chunk.count++;
+            }
+            offset = end + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * @param previous stock of the previous line, its symbol is compared first
+     * @return stock of the line
+     */
+    private Stock parseLine(Line line, Stock previous, Chunk chunk, long position) {
+        int symbolAt = indexOf(line, ',', 0) + 1;
+        int indicatorAt = indexOf(line, ',', symbolAt) + 1;
+        int quantityAt = indexOf(line, ',', indicatorAt) + 1;
+        int priceAt = indexOf(line, ',', quantityAt) + 1;
+        if (symbolAt == 0 || indicatorAt == 0 || quantityAt == 0 || priceAt == 0) {
+            throw new IllegalArgumentException("Line at byte " + position + " does not have 5 fields");
+        }
+        Stock stock = previous != null && equals(line, symbolAt, indicatorAt - 1, previous.getStockSymbol())
+                ? previous : stocks.get(line.substring(symbolAt, indicatorAt - 1));
+        if (stock == null) throw new IllegalArgumentException("Line at byte " + position + " is of a stock which is not imported");
+        try {
+            long timestamp = TradeStore.toEpochNanos(TradeReplay.parseTimestamp(line, symbolAt - 1));
+            boolean sell;
+            if (equals(line, indicatorAt, quantityAt - 1, "BUY")) sell = false;
+            else if (equals(line, indicatorAt, quantityAt - 1, "SELL")) sell = true;
+            else throw new IllegalArgumentException("Unknown indicator");
+            long quantity = parseQuantity(line, quantityAt, priceAt - 1);
+            if (quantity <= 0) throw new IllegalArgumentException("Quantity cannot be less or equal to 0.");
+            long price = parsePrice(line, priceAt, line.length());
+            byte scale;
+            if (price >= 0) {
+                if (price == 0) throw new IllegalArgumentException("Price cannot be less or equal to 0.");
+                int dot = indexOf(line, '.', priceAt);
+                scale = (byte) (dot < 0 ? 0 : line.length() - dot - 1);
+            } else {
+                BigDecimal decimal = new BigDecimal(line.substring(priceAt, line.length()));
+                Trade.validate(quantity, decimal);
+                price = TradeStore.toFixedPoint(decimal);
+                scale = TradeStore.toScale(decimal);
+            }
+            chunk.columns(stock).add(timestamp, quantity, price, scale, sell);
+        } catch (DateTimeException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line at byte " + position + " cannot be parsed", e);
+        }
+        return stock;
+    }
+
+    /**
+     * Parses plain decimal number with at most 8 decimal places to fixed point, without creating a BigDecimal.
+     *
+     * @return fixed point price or -1 if the price is not a plain decimal number of up to 18 digits, it is parsed
+     *         as BigDecimal then
+     */
+    private static long parsePrice(CharSequence line, int from, int to) {
+        long value = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == '.' && scale < 0 && digits > 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && scale < TradeStore.PRICE_SCALE && digits < 18) {
+                value = value * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) scale++;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || scale == 0) return -1;
+        for (int i = Math.max(scale, 0); i < TradeStore.PRICE_SCALE; i++) {
+            if (value > Long.MAX_VALUE / 10) return -1;
+            value *= 10;
+        }
+        return value;
+    }
+
+    private static long parseQuantity(CharSequence line, int from, int to) {
+        if (to == from || to - from > 18) throw new IllegalArgumentException("Quantity is not a number");
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) throw new IllegalArgumentException("Quantity is not a number");
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from) {
+        for (int i = from; i < line.length(); i++) if (line.charAt(i) == c) return i;
+        return -1;
+    }
+
+    private static boolean equals(CharSequence line, int from, int to, String value) {
+        if (to - from != value.length()) return false;
+        for (int i = 0; i < value.length(); i++) if (line.charAt(from + i) != value.charAt(i)) return false;
+        return true;
+    }
+
+    private Chunk parseBinary(ByteBuffer buffer, long position) {
+        Chunk chunk = new Chunk(buffer.remaining());
+        TradeBatch batch = new TradeBatch();
+        while (buffer.hasRemaining()) {
+            long batchPosition = position + buffer.position();
+            String symbol;
+            try {
+                symbol = TradeCodec.decode(buffer, batch);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Batch at byte " + batchPosition + " cannot be decoded", e);
+            }
+            Stock stock = stocks.get(symbol);
+            if (stock == null) throw new IllegalArgumentException("Batch at byte " + batchPosition + " is of a stock which is not imported");
+            Columns columns = chunk.columns(stock);
+            for (int i = 0; i < batch.size(); i++) {
+                columns.add(batch.timestamp(i), batch.quantity(i), batch.price(i), batch.scale(i),
+                        batch.indicator(i) == Trade.TradeIndicator.SELL);
+            }
+            chunk.count += batch.size();
+            batch.clear();
+        }
+        return chunk;
+    }
+
+    /**
+     * Waits for chunks in the order of the file, reporting progress after each.
+     *
+     * @return trades by stock, in the order of the file
+     */
+    private Map<Stock, Columns> join(List<ForkJoinTask<Chunk>> tasks, long size, long start,
+                                     Consumer<? super ImportProgress> listener) {
+        Map<Stock, Columns> trades = new LinkedHashMap<>();
+        long bytes = 0;
+        long count = 0;
+        try {
+            for (ForkJoinTask<Chunk> task : tasks) {
+                Chunk chunk = get(task);
+                for (Map.Entry<Stock, Columns> entry : chunk.trades.entrySet()) {
+                    Columns columns = trades.get(entry.getKey());
+                    if (columns == null) trades.put(entry.getKey(), entry.getValue());
+                    else columns.addAll(entry.getValue());
+                }
+                bytes += chunk.bytes;
+                count += chunk.count;
+                listener.accept(new ImportProgress(bytes, size, count, 0, System.nanoTime() - start));
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : tasks) task.cancel(false);
+        }
+        return trades;
+    }
+
+    private ImportProgress load(Map<Stock, Columns> trades, long size, long start, Consumer<? super ImportProgress> listener) {
+        long count = 0;
+        // every stock is checked before any is loaded, so trades of the file are not done for some stocks only
+        for (Map.Entry<Stock, Columns> entry : trades.entrySet()) {
+            if (entry.getValue().first() < entry.getKey().getLastTimestamp()) {
+                throw new IllegalArgumentException("Trades of " + entry.getKey().getStockSymbol() + " cannot be done before its last trade");
+            }
+            count += entry.getValue().size;
+        }
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+        for (Map.Entry<Stock, Columns> entry : trades.entrySet()) {
+            tasks.add(pool.submit(() -> load(entry.getKey(), entry.getValue())));
+        }
+        long loaded = 0;
+        try {
+            for (ForkJoinTask<Integer> task : tasks) {
+                loaded += get(task);
+                listener.accept(new ImportProgress(size, size, count, loaded, System.nanoTime() - start));
+            }
+        } finally {
+            // stocks are not traded by the import once it has returned or thrown
+            for (ForkJoinTask<Integer> task : tasks) {
+                task.cancel(false);
+                task.quietlyJoin();
+            }
+        }
+        ImportProgress progress = new ImportProgress(size, size, count, loaded, System.nanoTime() - start);
+        if (tasks.isEmpty()) listener.accept(progress);
+        return progress;
+    }
+
+    private static int load(Stock stock, Columns columns) {
+        if (!columns.isSorted()) columns.sort();
+        TradeBatch batch = new TradeBatch();
+        for (int i = 0; i < columns.size; i++) {
+            batch.add(columns.timestamps[i], columns.quantities[i], columns.prices[i], columns.scales[i],
+                    columns.sells[i] ? Trade.TradeIndicator.SELL : Trade.TradeIndicator.BUY);
+            if (batch.size() == LOAD_BATCH_SIZE) {
+                stock.tradeBatch(batch);
+                batch.clear();
+            }
+        }
+        stock.tradeBatch(batch);
+        return columns.size;
+    }
+
+    /**
+     * Waits for the task, rethrowing its exception.
+     */
+    private static <T> T get(ForkJoinTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import has been interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.gbce.stocks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only journal of trades of a stock in a memory-mapped file, see {@link Stock#setTradeJournal(TradeJournal)}.
+ * <p>
+ * Every trade is a fixed-width record of 32 bytes: timestamp, quantity and fixed point price as longs, scale and
+ * indicator as bytes and a checksum. The file is mapped in regions, which are forced to the storage device according
+ * to the {@link SyncPolicy}. The header records how many trades are known to have been forced. When the journal is
+ * opened it is scanned from there up to the first empty or damaged record, e.g. one torn by a crash, new trades are
+ * appended from there.
+ * <p>
+ * A journal belongs to a single stock, records are appended by the writer of the stock.
+ */
+public final class TradeJournal implements AutoCloseable {
+
+    static final int RECORD_SIZE = 32;
+
+    static final int DEFAULT_REGION_SIZE = 64 << 20;
+
+    // "GBCETRJ1"
+    private static final long MAGIC = 0x4742434554524A31L;
+
+    private static final int VERSION = 1;
+
+    private final FileChannel channel;
+
+    private final SyncPolicy syncPolicy;
+
+    private final int regionSize;
+
+    // magic, version, record size and number of records known to have been forced, which need not be scanned on open
+    private final MappedByteBuffer header;
+
+    // region appended to, read by the periodic sync
+    private volatile MappedByteBuffer region;
+
+    private long regionStart;
+
+    // regions following the one appended to, mapped ahead by reserve
+    private final ArrayDeque<MappedByteBuffer> reserved = new ArrayDeque<>();
+
+    // file offset of the next record, read by the periodic sync
+    private volatile long position;
+
+    private final ScheduledExecutorService sync;
+
+    private final AtomicBoolean attached = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    /**
+     * Called for every trade of the journal.
+     */
+    @FunctionalInterface
+    interface Visitor {
+
+        void trade(long timestamp, long quantity, long price, byte scale, Trade.TradeIndicator indicator);
+    }
+
+    private TradeJournal(FileChannel channel, SyncPolicy syncPolicy, int regionSize) throws IOException {
+        this.channel = channel;
+        this.syncPolicy = syncPolicy;
+        this.regionSize = regionSize;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, RECORD_SIZE);
+        if (header.getLong(0) == 0) {
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putInt(12, RECORD_SIZE);
+            header.force();
+        } else if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION || header.getInt(12) != RECORD_SIZE) {
+            throw new IOException("File is not a trade journal");
+        }
+        long forced = header.getLong(16);
+        position = forced > 0 && (forced + 1) * RECORD_SIZE <= channel.size() ? (forced + 1) * RECORD_SIZE : RECORD_SIZE;
+        map(position - position % regionSize);
+        scan();
+        discardTail();
+        if (syncPolicy.isPeriodic()) {
+            sync = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trade-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sync.scheduleWithFixedDelay(this::force, syncPolicy.interval(), syncPolicy.interval(), TimeUnit.NANOSECONDS);
+        } else {
+            sync = null;
+        }
+    }
+
+    /**
+     * Opens journal, the file is created if it does not exist.
+     *
+     * @param path path must be specified otherwise exception is thrown
+     * @param syncPolicy sync policy must be specified otherwise exception is thrown
+     * @return journal positioned after the last complete trade
+     * @throws IOException if the file cannot be mapped or it is not a trade journal
+     */
+    public static TradeJournal open(Path path, SyncPolicy syncPolicy) throws IOException {
+        return open(path, syncPolicy, DEFAULT_REGION_SIZE);
+    }
+
+    static TradeJournal open(Path path, SyncPolicy syncPolicy, int regionSize) throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(syncPolicy);
+        if (regionSize < 2 * RECORD_SIZE || regionSize % RECORD_SIZE != 0) throw new IllegalArgumentException("Region size must be a multiple of " + RECORD_SIZE);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new TradeJournal(channel, syncPolicy, regionSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, regionSize);
+        regionStart = start;
+    }
+
+    /**
+     * Moves position past complete records.
+     */
+    private void scan() throws IOException {
+        while (true) {
+            if (position == regionStart + regionSize) {
+                if (channel.size() <= position) return;
+                map(position);
+            }
+            int offset = (int) (position - regionStart);
+            long timestamp = region.getLong(offset);
+            long quantity = region.getLong(offset + 8);
+            long price = region.getLong(offset + 16);
+            byte scale = region.get(offset + 24);
+            byte indicator = region.get(offset + 25);
+            if (quantity <= 0 || region.getInt(offset + 28) != checksum(timestamp, quantity, price, scale, indicator)) return;
+            position += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Discards records after the position, e.g. ones written before a torn record, otherwise they would be scanned
+     * on the next open once the records before them have been appended again.
+     */
+    private void discardTail() throws IOException {
+        long end = regionStart + regionSize;
+        if (channel.size() > end) channel.truncate(end);
+        boolean discarded = false;
+        for (int offset = (int) (position - regionStart); offset < regionSize; offset += 8) {
+            if (region.getLong(offset) != 0) {
+                region.putLong(offset, 0);
+                discarded = true;
+            }
+        }
+        if (discarded) region.force();
+    }
+
+    /**
+     * Replays trades from the start of the journal.
+     */
+    void replay(Visitor visitor) {
+        replay(0, visitor);
+    }
+
+    /**
+     * Replays trades from the given record on, e.g. ones after a snapshot.
+     *
+     * @param from number of records to skip
+     */
+    void replay(long from, Visitor visitor) {
+        try {
+            MappedByteBuffer region = null;
+            long regionStart = 0;
+            for (long position = (from + 1) * RECORD_SIZE; position < this.position; position += RECORD_SIZE) {
+                if (region == null || position == regionStart + regionSize) {
+                    regionStart = position - position % regionSize;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+                }
+                int offset = (int) (position - regionStart);
+                visitor.trade(region.getLong(offset), region.getLong(offset + 8), region.getLong(offset + 16), region.get(offset + 24),
+                        region.get(offset + 25) == 0 ? Trade.TradeIndicator.BUY : Trade.TradeIndicator.SELL);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps regions the given number of trades are appended to, so appending them cannot fail part way, it must be
+     * called by the single writer of the journal.
+     *
+     * @throws UncheckedIOException if the file cannot be extended, no trade has been appended then
+     */
+    void reserve(long trades) {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        long end = position + trades * RECORD_SIZE;
+        long mapped = regionStart + (reserved.size() + 1L) * regionSize;
+        try {
+            while (mapped < end) {
+                reserved.add(channel.map(FileChannel.MapMode.READ_WRITE, mapped, regionSize));
+                mapped += regionSize;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends trade, it must be called by the single writer of the journal.
+     *
+     * @throws UncheckedIOException if the file cannot be extended
+     */
+    void append(long timestamp, long quantity, long price, byte scale, Trade.TradeIndicator indicator) {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        if (position == regionStart + regionSize) {
+            // trades in the previous region are not seen by the periodic sync anymore
+            force();
+            MappedByteBuffer next = reserved.poll();
+            if (next != null) {
+                region = next;
+                regionStart = position;
+            } else {
+                try {
+                    map(position);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        byte sell = indicator == Trade.TradeIndicator.SELL ? (byte) 1 : (byte) 0;
+        int offset = (int) (position - regionStart);
+        region.putLong(offset, timestamp);
+        region.putLong(offset + 8, quantity);
+        region.putLong(offset + 16, price);
+        region.put(offset + 24, scale);
+        region.put(offset + 25, sell);
+        region.putInt(offset + 28, checksum(timestamp, quantity, price, scale, sell));
+        position += RECORD_SIZE;
+        if (syncPolicy.isPerTrade()) force();
+    }
+
+    /**
+     * Ends trades done at once, it must be called by the single writer of the journal.
+     */
+    void endBatch() {
+        if (syncPolicy.isPerBatch()) force();
+    }
+
+    /**
+     * Forces appended trades, it can be called by the writer or the periodic sync.
+     */
+    private void force() {
+        // the region is read after the position, so it holds the trades up to it or the previous region has been forced
+        long position = this.position;
+        region.force();
+        // records up to it are complete and need not be scanned on open, the header need not be forced right away
+        header.putLong(16, position / RECORD_SIZE - 1);
+    }
+
+    private static int checksum(long timestamp, long quantity, long price, byte scale, byte indicator) {
+        long hash = timestamp * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ quantity) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ price) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (scale << 8 | indicator & 0xFF)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    /**
+     * Returns number of trades in this journal.
+     *
+     * @return number of trades
+     */
+    public long size() {
+        return position / RECORD_SIZE - 1;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Marks journal as belonging to a stock.
+     *
+     * @throws IllegalStateException if it already belongs to a stock
+     */
+    void attach() {
+        if (!attached.compareAndSet(false, true)) throw new IllegalStateException("Journal belongs to another stock");
+    }
+
+    void detach() {
+        attached.set(false);
+    }
+
+    /**
+     * Forces appended trades and closes the file, trades cannot be appended afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (sync != null) sync.shutdownNow();
+        force();
+        header.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.gbce.stocks;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+
+/**
+ * Read-only list of a range of trades of a snapshot of the trade store, trades are created when they are read.
+ */
+final class TradeList extends AbstractList<Trade> implements RandomAccess {
+
+    private final TradeStore.View view;
+
+    private final long from;
+
+    private final int size;
+
+    TradeList(TradeStore.View view, long from, long to) {
+        this.view = view;
+        this.from = from;
+        this.size = (int) Math.min(Integer.MAX_VALUE, to - from);
+    }
+
+    @Override
+    public Trade get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return view.trade(from + index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TradeList subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From index: " + fromIndex + ", To index: " + toIndex + ", Size: " + size);
+        }
+        return new TradeList(view, from + fromIndex, from + toIndex);
+    }
+
+    @Override
+    public Spliterator<Trade> spliterator() {
+        return new TradeSpliterator(view, from, from + size);
+    }
+}
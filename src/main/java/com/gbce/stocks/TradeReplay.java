@@ -0,0 +1,167 @@
+package com.gbce.stocks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Replays recorded trades through stocks as fast as they can be done, at the times they have been recorded.
+ * <p>
+ * A recording has a trade per line, {@code timestamp,symbol,indicator,quantity,price}, e.g.
+ * {@code 2016-01-04T08:00:00.000000001Z,POP,BUY,100,10.25}, see {@link #format(String, Trade)}, in the order of
+ * time. Before each trade the clock is set to its timestamp, so when the stocks and indices of the replay use the
+ * clock, trades, volume weighted stock prices and index values are the same as when the trades have been recorded.
+ */
+public final class TradeReplay {
+
+    private final Map<String, Stock> stocks = new HashMap<>();
+
+    private final ReplayClock clock;
+
+    /**
+     * Creates replay of trades of the stocks.
+     *
+     * @param stocks stocks must be specified otherwise exception is thrown, they should use the clock
+     * @param clock clock must be specified otherwise exception is thrown
+     */
+    public TradeReplay(Collection<Stock> stocks, ReplayClock clock) {
+        Objects.requireNonNull(stocks);
+        this.clock = Objects.requireNonNull(clock);
+        for (Stock stock : stocks) this.stocks.put(stock.getStockSymbol(), stock);
+    }
+
+    /**
+     * Replays recorded trades.
+     *
+     * @param recording recording must be specified otherwise exception is thrown
+     * @return number of trades replayed
+     * @throws IOException if the recording cannot be read
+     * @throws IllegalArgumentException if a line cannot be parsed, its stock is not replayed or it is out of order,
+     *                                  trades of preceding lines have been done
+     */
+    public long replay(Path recording) throws IOException {
+        return replay(recording, stock -> {
+        });
+    }
+
+    /**
+     * Replays recorded trades, the listener is called after each trade with the clock still at its timestamp,
+     * e.g. to calculate an index.
+     *
+     * @param recording recording must be specified otherwise exception is thrown
+     * @param listener listener must be specified otherwise exception is thrown, it is given the stock traded
+     * @return number of trades replayed
+     * @throws IOException if the recording cannot be read
+     * @throws IllegalArgumentException if a line cannot be parsed, its stock is not replayed or it is out of order,
+     *                                  trades of preceding lines have been done
+     */
+    public long replay(Path recording, Consumer<? super Stock> listener) throws IOException {
+        Objects.requireNonNull(recording);
+        Objects.requireNonNull(listener);
+        long count = 0;
+        Instant last = Instant.MIN;
+        try (BufferedReader reader = Files.newBufferedReader(recording, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) continue;
+                int symbolAt = line.indexOf(',') + 1;
+                int indicatorAt = line.indexOf(',', symbolAt) + 1;
+                int quantityAt = line.indexOf(',', indicatorAt) + 1;
+                int priceAt = line.indexOf(',', quantityAt) + 1;
+                if (symbolAt == 0 || indicatorAt == 0 || quantityAt == 0 || priceAt == 0) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " does not have 5 fields");
+                }
+                Stock stock = stocks.get(line.substring(symbolAt, indicatorAt - 1));
+                if (stock == null) throw new IllegalArgumentException("Line " + lineNumber + " is of a stock which is not replayed");
+                Instant timestamp;
+                Trade.TradeIndicator indicator;
+                int quantity;
+                BigDecimal price;
+                try {
+                    timestamp = parseTimestamp(line, symbolAt - 1);
+                    indicator = Trade.TradeIndicator.valueOf(line.substring(indicatorAt, quantityAt - 1));
+                    quantity = Integer.parseInt(line.substring(quantityAt, priceAt - 1));
+                    price = new BigDecimal(line.substring(priceAt));
+                } catch (DateTimeException | IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " cannot be parsed", e);
+                }
+                if (timestamp.isBefore(last)) throw new IllegalArgumentException("Line " + lineNumber + " is before the previous trade");
+                last = timestamp;
+                clock.set(timestamp);
+                if (indicator == Trade.TradeIndicator.BUY) stock.buy(quantity, price);
+                else stock.sell(quantity, price);
+                count++;
+                listener.accept(stock);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parses ISO-8601 instant at the start of the line, {@code yyyy-MM-ddTHH:mm:ss[.fraction]Z} as written by
+     * {@link Instant#toString()} is parsed without a formatter, which is several times faster, anything else is
+     * parsed by {@link Instant#parse(CharSequence)}.
+     */
+    static Instant parseTimestamp(CharSequence line, int end) {
+        if (end < 20 || end > 30 || line.charAt(4) != '-' || line.charAt(7) != '-' || line.charAt(10) != 'T'
+                || line.charAt(13) != ':' || line.charAt(16) != ':' || line.charAt(end - 1) != 'Z'
+                || end > 20 && (line.charAt(19) != '.' || end == 21)) {
+            return Instant.parse(line.subSequence(0, end));
+        }
+        int year = digits(line, 0, 4);
+        int month = digits(line, 5, 7);
+        int day = digits(line, 8, 10);
+        int hour = digits(line, 11, 13);
+        int minute = digits(line, 14, 16);
+        int second = digits(line, 17, 19);
+        int nanos = 0;
+        if (end > 20) {
+            nanos = digits(line, 20, end - 1);
+            for (int i = end - 1 - 20; i < 9; i++) nanos *= 10;
+        }
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || nanos < 0) {
+            return Instant.parse(line.subSequence(0, end));
+        }
+        // validates the date
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600 + minute * 60 + second, nanos);
+    }
+
+    /**
+     * @return value of the decimal digits or -1 if there is another character
+     */
+    private static int digits(CharSequence line, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Formats trade as a line of a recording, without line separator.
+     *
+     * @param stockSymbol symbol of the stock traded
+     * @param trade trade
+     * @return line
+     */
+    public static String format(String stockSymbol, Trade trade) {
+        return trade.getTimestamp() + "," + stockSymbol + "," + trade.getIndicator() + "," + trade.getQuantity() + ","
+                + trade.getPrice().toPlainString();
+    }
+}
@@ -0,0 +1,55 @@
+package com.gbce.stocks;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over a range of trades of a snapshot of the trade store, it splits in halves of the range.
+ */
+final class TradeSpliterator implements Spliterator<Trade> {
+
+    private final TradeStore.View view;
+
+    private long from;
+
+    private final long to;
+
+    TradeSpliterator(TradeStore.View view, long from, long to) {
+        this.view = view;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Trade> action) {
+        if (from >= to) return false;
+        action.accept(view.trade(from++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Trade> action) {
+        long to = this.to;
+        for (long sequence = from; sequence < to; sequence++) action.accept(view.trade(sequence));
+        from = to;
+    }
+
+    @Override
+    public Spliterator<Trade> trySplit() {
+        long middle = (from + to) >>> 1;
+        if (middle <= from) return null;
+        TradeSpliterator prefix = new TradeSpliterator(view, from, middle);
+        from = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    }
+}
@@ -0,0 +1,491 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.time.Instant;
+
+/**
+ * Columnar, append-only store of trades, trades are addressed by their sequence number.
+ * <p>
+ * Trades are kept in fixed size segments of primitive columns. There must be a single writer at a time, but readers
+ * need no locking: a published trade is never modified and a segment is never reused, so a {@link View} taken at any
+ * time is a consistent snapshot of the trades stored at that moment. Besides the trade data each trade stores
+ * cumulative quantity and price x quantity of all trades up to and including it, so sums over any range of trades
+ * take constant time. Trade objects are only created when asked for.
+ */
+final class TradeStore {
+
+    /**
+     * Scale of fixed point prices, prices with more decimal places cannot be stored.
+     */
+    static final int PRICE_SCALE = 8;
+
+    private static final int SEGMENT_SHIFT = 10;
+
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private volatile Directory directory = new Directory(new Segment[4], 0, 0, 0);
+
+    private volatile long firstSequence;
+
+    private volatile long nextSequence;
+
+    // totals of all trades ever added, written by the writer only
+    private final WideSum totalNotional = new WideSum();
+
+    private long totalQuantity;
+
+    private static final class Segment {
+
+        // epoch nanos
+        final long[] timestamps;
+
+        final long[] quantities;
+
+        // fixed point prices with PRICE_SCALE
+        final long[] prices;
+
+        // scales of prices as traded, so trades can be recreated with the same prices
+        final byte[] scales;
+
+        // bit set for sell indicators
+        final long[] sells;
+
+        final long[] cumulativeQuantities;
+
+        // cumulative price x quantity as 128-bit values
+        final long[] cumulativeNotionalHighs;
+
+        final long[] cumulativeNotionalLows;
+
+        Segment(int capacity) {
+            timestamps = new long[capacity];
+            quantities = new long[capacity];
+            prices = new long[capacity];
+            scales = new byte[capacity];
+            sells = new long[(capacity + Long.SIZE - 1) / Long.SIZE];
+            cumulativeQuantities = new long[capacity];
+            cumulativeNotionalHighs = new long[capacity];
+            cumulativeNotionalLows = new long[capacity];
+        }
+
+        Segment(Segment segment, int capacity) {
+            this(capacity);
+            int length = segment.timestamps.length;
+            System.arraycopy(segment.timestamps, 0, timestamps, 0, length);
+            System.arraycopy(segment.quantities, 0, quantities, 0, length);
+            System.arraycopy(segment.prices, 0, prices, 0, length);
+            System.arraycopy(segment.scales, 0, scales, 0, length);
+            System.arraycopy(segment.sells, 0, sells, 0, segment.sells.length);
+            System.arraycopy(segment.cumulativeQuantities, 0, cumulativeQuantities, 0, length);
+            System.arraycopy(segment.cumulativeNotionalHighs, 0, cumulativeNotionalHighs, 0, length);
+            System.arraycopy(segment.cumulativeNotionalLows, 0, cumulativeNotionalLows, 0, length);
+        }
+
+        int capacity() {
+            return timestamps.length;
+        }
+    }
+
+    /**
+     * Immutable list of segments, slots of the array within count are never modified.
+     */
+    private static final class Directory {
+
+        final Segment[] segments;
+
+        final int start;
+
+        final int count;
+
+        // segment number of the first segment, i.e. its first sequence number >>> SEGMENT_SHIFT
+        final long base;
+
+        Directory(Segment[] segments, int start, int count, long base) {
+            this.segments = segments;
+            this.start = start;
+            this.count = count;
+            this.base = base;
+        }
+
+        Segment segment(long sequence) {
+            return segments[start + (int) ((sequence >>> SEGMENT_SHIFT) - base)];
+        }
+    }
+
+    /**
+     * Consistent snapshot of stored trades.
+     */
+    static final class View {
+
+        private final Directory directory;
+
+        private final long first;
+
+        private final long next;
+
+        private View(Directory directory, long first, long next) {
+            this.directory = directory;
+            this.first = first;
+            this.next = next;
+        }
+
+        /**
+         * @return sequence number of the oldest trade in this view
+         */
+        long first() {
+            return first;
+        }
+
+        /**
+         * @return sequence number following the newest trade in this view
+         */
+        long next() {
+            return next;
+        }
+
+        boolean isEmpty() {
+            return first == next;
+        }
+
+        long timestamp(long sequence) {
+            return directory.segment(sequence).timestamps[index(sequence)];
+        }
+
+        long quantity(long sequence) {
+            return directory.segment(sequence).quantities[index(sequence)];
+        }
+
+        long price(long sequence) {
+            return directory.segment(sequence).prices[index(sequence)];
+        }
+
+        long cumulativeQuantity(long sequence) {
+            return directory.segment(sequence).cumulativeQuantities[index(sequence)];
+        }
+
+        long cumulativeNotionalHigh(long sequence) {
+            return directory.segment(sequence).cumulativeNotionalHighs[index(sequence)];
+        }
+
+        long cumulativeNotionalLow(long sequence) {
+            return directory.segment(sequence).cumulativeNotionalLows[index(sequence)];
+        }
+
+        byte scale(long sequence) {
+            return directory.segment(sequence).scales[index(sequence)];
+        }
+
+        Trade.TradeIndicator indicator(long sequence) {
+            return TradeStore.indicator(directory.segment(sequence), index(sequence));
+        }
+
+        Trade trade(long sequence) {
+            return TradeStore.trade(directory.segment(sequence), index(sequence));
+        }
+
+        /**
+         * Finds the oldest trade done at or after the timestamp with binary search, trades are in the order of time.
+         *
+         * @param timestamp epoch nanos
+         * @return sequence number of the trade or {@link #next()} if there is no such trade
+         */
+        long ceiling(long timestamp) {
+            return ceiling(timestamp, first);
+        }
+
+        /**
+         * Finds the oldest trade done at or after the timestamp among trades from the sequence number on, e.g. one
+         * found for an earlier timestamp.
+         *
+         * @param timestamp epoch nanos
+         * @param from sequence number of the first trade searched, at least {@link #first()}
+         * @return sequence number of the trade or {@link #next()} if there is no such trade
+         */
+        long ceiling(long timestamp, long from) {
+            long low = from;
+            long high = next;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (timestamp(middle) < timestamp) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Sums price x quantity and quantity of trades in the range.
+         *
+         * @param from sequence number of the first trade, inclusive
+         * @param to sequence number of the last trade, exclusive
+         * @param notional set to the sum of price x quantity
+         * @return sum of quantity
+         */
+        long sum(long from, long to, WideSum notional) {
+            notional.clear();
+            if (from >= to) return 0;
+            Segment last = directory.segment(to - 1);
+            int lastIndex = index(to - 1);
+            Segment first = directory.segment(from);
+            int firstIndex = index(from);
+            notional.add(last.cumulativeNotionalHighs[lastIndex], last.cumulativeNotionalLows[lastIndex]);
+            notional.subtract(first.cumulativeNotionalHighs[firstIndex], first.cumulativeNotionalLows[firstIndex]);
+            notional.addProduct(first.prices[firstIndex], first.quantities[firstIndex]);
+            return last.cumulativeQuantities[lastIndex] - first.cumulativeQuantities[firstIndex] + first.quantities[firstIndex];
+        }
+    }
+
+    /**
+     * Takes a consistent snapshot of stored trades, it can be called at any time without locking.
+     */
+    View view() {
+        while (true) {
+            // the order of reads matters: a segment is published before trades in it and dropped after trades in it are removed
+            long next = nextSequence;
+            Directory directory = this.directory;
+            long first = firstSequence;
+            if (first <= next) return new View(directory, first, next);
+        }
+    }
+
+    /**
+     * Adds a trade, it must be called by a single writer at a time.
+     */
+    void add(long timestamp, long quantity, long price, byte scale, Trade.TradeIndicator indicator) {
+        long sequence = nextSequence;
+        Segment segment = writableSegment(sequence);
+        int index = index(sequence);
+        segment.timestamps[index] = timestamp;
+        segment.quantities[index] = quantity;
+        segment.prices[index] = price;
+        segment.scales[index] = scale;
+        if (indicator == Trade.TradeIndicator.SELL) segment.sells[index >>> 6] |= 1L << index;
+        totalNotional.addProduct(price, quantity);
+        totalQuantity += quantity;
+        segment.cumulativeQuantities[index] = totalQuantity;
+        segment.cumulativeNotionalHighs[index] = totalNotional.high();
+        segment.cumulativeNotionalLows[index] = totalNotional.low();
+        nextSequence = sequence + 1;
+    }
+
+    /**
+     * Adds trades with their cumulative sums at once to an empty store, e.g. when they are restored from a snapshot,
+     * columns are copied in bulk. It must be called by a single writer at a time.
+     *
+     * @param first sequence number of the first trade
+     * @param count number of trades, buffers are read from their positions
+     */
+    void restore(long first, int count, LongBuffer timestamps, LongBuffer quantities, LongBuffer prices, ByteBuffer scales,
+                 ByteBuffer indicators, LongBuffer cumulativeQuantities, LongBuffer cumulativeNotionalHighs, LongBuffer cumulativeNotionalLows) {
+        skipTo(first);
+        if (count == 0) return;
+        long sequence = first;
+        long next = first + count;
+        while (sequence < next) {
+            int index = index(sequence);
+            int length = (int) Math.min(SEGMENT_SIZE - index, next - sequence);
+            Segment segment = writableSegment(sequence + length - 1);
+            while (segment.capacity() < index + length) segment = writableSegment(sequence + length - 1);
+            timestamps.get(segment.timestamps, index, length);
+            quantities.get(segment.quantities, index, length);
+            prices.get(segment.prices, index, length);
+            scales.get(segment.scales, index, length);
+            for (int i = index; i < index + length; i++) {
+                if (indicators.get() != 0) segment.sells[i >>> 6] |= 1L << i;
+            }
+            cumulativeQuantities.get(segment.cumulativeQuantities, index, length);
+            cumulativeNotionalHighs.get(segment.cumulativeNotionalHighs, index, length);
+            cumulativeNotionalLows.get(segment.cumulativeNotionalLows, index, length);
+            sequence += length;
+        }
+        Segment last = directory.segment(next - 1);
+        int index = index(next - 1);
+        totalQuantity = last.cumulativeQuantities[index];
+        totalNotional.clear();
+        totalNotional.add(last.cumulativeNotionalHighs[index], last.cumulativeNotionalLows[index]);
+        nextSequence = next;
+    }
+
+    private Segment writableSegment(long sequence) {
+        Directory directory = this.directory;
+        int index = index(sequence);
+        int relative = (int) ((sequence >>> SEGMENT_SHIFT) - directory.base);
+
+        if (directory.count == 0) {
+            // a segment of an empty store starts small and grows, so stocks with few trades stay small
+            Segment segment = new Segment(Math.min(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(index) << 1), SEGMENT_SIZE));
+            Segment[] segments = new Segment[4];
+            segments[0] = segment;
+            this.directory = new Directory(segments, 0, 1, sequence >>> SEGMENT_SHIFT);
+            return segment;
+        }
+        if (relative == directory.count) {
+            Segment segment = new Segment(SEGMENT_SIZE);
+            append(directory, segment);
+            return segment;
+        }
+        Segment segment = directory.segments[directory.start + relative];
+        if (index < segment.capacity()) return segment;
+
+        // only a segment started in an empty store can be partial, it is copied rather than modified so readers are not affected
+        Segment grown = new Segment(segment, Math.min(segment.capacity() << 1, SEGMENT_SIZE));
+        Segment[] segments = directory.segments.clone();
+        segments[directory.start + relative] = grown;
+        this.directory = new Directory(segments, directory.start, directory.count, directory.base);
+        return grown;
+    }
+
+    private void append(Directory directory, Segment segment) {
+        Segment[] segments = directory.segments;
+        int start = directory.start;
+        if (start + directory.count == segments.length) {
+            segments = new Segment[Math.max(4, directory.count << 1)];
+            System.arraycopy(directory.segments, start, segments, 0, directory.count);
+            start = 0;
+        }
+        // the slot is outside of count of any published directory
+        segments[start + directory.count] = segment;
+        this.directory = new Directory(segments, start, directory.count + 1, directory.base);
+    }
+
+    /**
+     * Removes the oldest trade, it must be called by a single writer at a time.
+     */
+    void removeFirst() {
+        long first = firstSequence;
+        if (first == nextSequence) throw new IllegalStateException("Store is empty");
+        firstSequence = first + 1;
+        if (index(first + 1) == 0) {
+            Directory directory = this.directory;
+            this.directory = new Directory(directory.segments, directory.start + 1, directory.count - 1, directory.base + 1);
+        }
+    }
+
+    /**
+     * Makes an empty store continue from the sequence number, e.g. when trades are restored from a snapshot, it must
+     * be called by a single writer at a time.
+     */
+    void skipTo(long sequence) {
+        if (!isEmpty()) throw new IllegalStateException("Store is not empty");
+        if (sequence < nextSequence) throw new IllegalArgumentException("Sequence cannot go back");
+        // first is written before next, so a view never sees first ahead of next
+        firstSequence = sequence;
+        directory = new Directory(new Segment[4], 0, 0, 0);
+        nextSequence = sequence;
+    }
+
+    int size() {
+        return (int) (nextSequence - firstSequence);
+    }
+
+    boolean isEmpty() {
+        return nextSequence == firstSequence;
+    }
+
+    /**
+     * @return sequence number of the oldest trade
+     */
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return sequence number the next trade will get
+     */
+    long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Timestamp of a stored trade, meant for the writer, readers should use a view.
+     */
+    long timestamp(long sequence) {
+        return directory.segment(sequence).timestamps[index(sequence)];
+    }
+
+    /**
+     * Price of a stored trade, meant for the writer, readers should use a view.
+     */
+    long price(long sequence) {
+        return directory.segment(sequence).prices[index(sequence)];
+    }
+
+    /**
+     * Scale of a stored trade, meant for the writer, readers should use a view.
+     */
+    byte scale(long sequence) {
+        return directory.segment(sequence).scales[index(sequence)];
+    }
+
+    /**
+     * Trade for a stored trade, meant for the writer, readers should use a view.
+     */
+    Trade trade(long sequence) {
+        return trade(directory.segment(sequence), index(sequence));
+    }
+
+    private static int index(long sequence) {
+        return (int) sequence & (SEGMENT_SIZE - 1);
+    }
+
+    private static Trade trade(Segment segment, int index) {
+        return new Trade(segment.quantities[index],
+                BigDecimal.valueOf(segment.prices[index], PRICE_SCALE).setScale(segment.scales[index]),
+                toInstant(segment.timestamps[index]),
+                indicator(segment, index));
+    }
+
+    private static Trade.TradeIndicator indicator(Segment segment, int index) {
+        return (segment.sells[index >>> 6] & (1L << index)) != 0 ? Trade.TradeIndicator.SELL : Trade.TradeIndicator.BUY;
+    }
+
+    /**
+     * Converts price to fixed point.
+     *
+     * @throws IllegalArgumentException if price has more than PRICE_SCALE decimal places or it is too large
+     */
+    static long toFixedPoint(BigDecimal price) {
+        try {
+            return price.setScale(PRICE_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Price cannot have more than " + PRICE_SCALE + " decimal places or exceed "
+                    + BigDecimal.valueOf(Long.MAX_VALUE, PRICE_SCALE), e);
+        }
+    }
+
+    static byte toScale(BigDecimal price) {
+        return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, price.scale()));
+    }
+
+    /**
+     * @throws IllegalArgumentException if timestamp cannot be represented as epoch nanos
+     */
+    static long toEpochNanos(Instant timestamp) {
+        try {
+            return Math.addExact(Math.multiplyExact(timestamp.getEpochSecond(), NANOS_PER_SECOND), timestamp.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Timestamp is out of range", e);
+        }
+    }
+
+    /**
+     * Converts timestamp a query is bounded by, timestamps out of the range of epoch nanos are clamped to it, as no
+     * trade can be done out of it.
+     */
+    static long toEpochNanosBound(Instant timestamp) {
+        try {
+            return Math.addExact(Math.multiplyExact(timestamp.getEpochSecond(), NANOS_PER_SECOND), timestamp.getNano());
+        } catch (ArithmeticException e) {
+            return timestamp.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND), Math.floorMod(epochNanos, NANOS_PER_SECOND));
+    }
+}
@@ -0,0 +1,94 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Mutable 128-bit two's complement accumulator, used to sum price x quantity products without overflow or allocation.
+ */
+final class WideSum {
+
+    private long high;
+
+    private long low;
+
+    void clear() {
+        high = 0;
+        low = 0;
+    }
+
+    void set(WideSum other) {
+        high = other.high;
+        low = other.low;
+    }
+
+    /**
+     * Adds product of two non-negative values.
+     */
+    void addProduct(long x, long y) {
+        add(multiplyHigh(x, y), x * y);
+    }
+
+    /**
+     * Subtracts product of two non-negative values.
+     */
+    void subtractProduct(long x, long y) {
+        subtract(multiplyHigh(x, y), x * y);
+    }
+
+    void add(WideSum other) {
+        add(other.high, other.low);
+    }
+
+    void subtract(WideSum other) {
+        subtract(other.high, other.low);
+    }
+
+    boolean isZero() {
+        return high == 0 && low == 0;
+    }
+
+    long high() {
+        return high;
+    }
+
+    long low() {
+        return low;
+    }
+
+    void add(long high, long low) {
+        long sum = this.low + low;
+        this.high += high + (Long.compareUnsigned(sum, this.low) < 0 ? 1 : 0);
+        this.low = sum;
+    }
+
+    void subtract(long high, long low) {
+        long difference = this.low - low;
+        this.high -= high + (Long.compareUnsigned(this.low, low) < 0 ? 1 : 0);
+        this.low = difference;
+    }
+
+    BigDecimal toBigDecimal(int scale) {
+        return new BigDecimal(toBigInteger(high, low), scale);
+    }
+
+    static BigInteger toBigInteger(long high, long low) {
+        BigInteger unsignedLow = BigInteger.valueOf(low >>> 1).shiftLeft(1).or(BigInteger.valueOf(low & 1));
+        return BigInteger.valueOf(high).shiftLeft(64).add(unsignedLow);
+    }
+
+    /**
+     * High 64 bits of the 128-bit product of two signed values, same as Math.multiplyHigh which is not available on Java 8.
+     */
+    static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+        long z0 = t >> 32;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+}
@@ -0,0 +1,42 @@
+package com.gbce.stocks;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Number of trades, volume and volume weighted price of trades of a stock done in a named window, see
+ * {@link Stock#addWindow(String, Duration)}.
+ */
+public final class WindowStatistics {
+
+    private final String name;
+
+    private final Duration length;
+
+    private final long numberOfTrades;
+
+    private final long volume;
+
+    private final BigDecimal volumeWeightedPrice;
+
+    WindowStatistics(String name, Duration length, long numberOfTrades, long volume, BigDecimal volumeWeightedPrice) {
+        this.name = name;
+        this.length = length;
+        this.numberOfTrades = numberOfTrades;
+        this.volume = volume;
+        this.volumeWeightedPrice = volumeWeightedPrice;
+    }
+
+    public String getName() { return name; }
+
+    public Duration getLength() { return length; }
+
+    public long getNumberOfTrades() { return numberOfTrades; }
+
+    public long getVolume() { return volume; }
+
+    /**
+     * @return volume weighted price or null if no trades have been done in the window
+     */
+    public BigDecimal getVolumeWeightedPrice() { return volumeWeightedPrice; }
+}
@@ -0,0 +1,81 @@
+package com.gbce.stocks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
+
+public class ExchangeTest {
+
+    private static final String[] SYMBOLS = {"TEA", "POP", "ALE", "JOE", "GIN"};
+
+    private Exchange exchange;
+
+    @Before
+    public void init() {
+        exchange = new Exchange(3);
+        for (String symbol : SYMBOLS) exchange.addStock(StockFactory.getStock(symbol));
+    }
+
+    @After
+    public void close() {
+        exchange.close();
+    }
+
+    @Test
+    public void whenStockHasBeenAddedThenItIsFoundBySymbol() {
+        assertEquals("GIN", exchange.getStock("GIN").getStockSymbol());
+        assertNull(exchange.getStock("XYZ"));
+        assertEquals(SYMBOLS.length, exchange.getStocks().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addStockShouldThrowExceptionWhenSymbolIsAlreadyListed() {
+        exchange.addStock(StockFactory.getStock("TEA"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buyShouldThrowExceptionWhenStockIsNotListed() {
+        exchange.buy("XYZ", 1, BigDecimal.ONE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sellShouldThrowExceptionWhenPriceIsZero() {
+        exchange.sell("TEA", 1, BigDecimal.ZERO);
+    }
+
+    @Test
+    public void whenTradesHaveBeenSubmittedThenTheyAreDoneInTheOrderOfSubmissionForEachStock() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            for (String symbol : SYMBOLS) {
+                futures.add(i % 2 == 0 ? exchange.buy(symbol, 1, new BigDecimal(i)) : exchange.sell(symbol, 1, new BigDecimal(i)));
+            }
+        }
+        futures.forEach(CompletableFuture::join);
+
+        for (String symbol : SYMBOLS) {
+            Stock stock = exchange.getStock(symbol);
+            List<Trade> trades = stock.getTrades();
+            assertEquals(1000, trades.size());
+            for (int i = 0; i < trades.size(); i++) assertEquals(new BigDecimal(i + 1), trades.get(i).getPrice());
+        }
+    }
+
+    @Test
+    public void whenExchangeHasBeenClosedThenSubmittedTradesHaveBeenDone() {
+        Stock stock = exchange.getStock("POP");
+        for (int i = 0; i < 100; i++) exchange.buy("POP", 1, BigDecimal.ONE);
+        exchange.close();
+        assertEquals(100, stock.getTrades().size());
+        assertSame(stock, exchange.getStock("POP"));
+    }
+}
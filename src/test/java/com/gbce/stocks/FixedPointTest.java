@@ -0,0 +1,66 @@
+package com.gbce.stocks;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class FixedPointTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ofScaleShouldThrowExceptionWhenScaleIsLessThanZero() {
+        FixedPoint.ofScale(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ofScaleShouldThrowExceptionWhenScaleIsMoreThanMaxScale() {
+        FixedPoint.ofScale(FixedPoint.MAX_SCALE + 1);
+    }
+
+    @Test
+    public void whenUnsignedValuesHaveBeenDividedThenQuotientIsEvaluatedCorrectly() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < 10_000; i++) {
+            long divisor = random.nextLong() >>> random.nextInt(63);
+            if (divisor == 0) continue;
+            long high = Long.remainderUnsigned(random.nextLong(), divisor);
+            long low = random.nextLong();
+            BigInteger numerator = WideSum.toBigInteger(high, low).and(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE));
+            BigInteger expected = numerator.divide(new BigInteger(Long.toUnsignedString(divisor)));
+            assertEquals(expected.longValue(), FixedPoint.divideUnsigned(high, low, divisor));
+        }
+    }
+
+    @Test
+    public void whenValuesHaveBeenDividedThenQuotientIsRoundedHalfEvenToTheScale() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < 10_000; i++) {
+            FixedPoint fixedPoint = FixedPoint.ofScale(random.nextInt(FixedPoint.MAX_SCALE + 1));
+            long numerator = random.nextLong() >>> (1 + random.nextInt(63));
+            int numeratorScale = random.nextInt(17) - 8;
+            long divisor = 1 + (random.nextLong() >>> (1 + random.nextInt(63)));
+            BigDecimal expected = BigDecimal.valueOf(numerator, numeratorScale).divide(BigDecimal.valueOf(divisor), fixedPoint.getScale(), RoundingMode.HALF_EVEN);
+            assertEquals(expected, fixedPoint.divide(0, numerator, numeratorScale, divisor));
+        }
+    }
+
+    @Test
+    public void whenQuotientIsHalfwayThenItIsRoundedToEven() {
+        assertEquals(new BigDecimal("2"), FixedPoint.pennies().divide(0, 5, 0, 2));
+        assertEquals(new BigDecimal("4"), FixedPoint.pennies().divide(0, 7, 0, 2));
+    }
+
+    @Test
+    public void whenIntermediateValuesOverflowThenQuotientIsStillEvaluatedCorrectly() {
+        FixedPoint fixedPoint = FixedPoint.ofScale(FixedPoint.MAX_SCALE);
+        assertEquals(new BigDecimal("18446744073709551616.00000000"), fixedPoint.divide(1, 0, 0, 1));
+        assertEquals(new BigDecimal(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(100_000_000))).movePointLeft(8),
+                fixedPoint.divide(0, Long.MAX_VALUE, 0, 1));
+    }
+}
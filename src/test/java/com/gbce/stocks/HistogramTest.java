@@ -0,0 +1,67 @@
+package com.gbce.stocks;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void whenNoValueHasBeenRecordedThenSnapshotIsEmpty() {
+        Histogram.Snapshot snapshot = new Histogram().getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getPercentile99());
+    }
+
+    @Test
+    public void whenSmallValuesAreRecordedThenTheyAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 20; i++) histogram.record(i);
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(20, snapshot.getCount());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(20, snapshot.getMax());
+        assertEquals(10.5, snapshot.getMean());
+        assertEquals(10, snapshot.getMedian());
+        assertEquals(20, snapshot.getPercentile99());
+    }
+
+    @Test
+    public void whenLargeValuesAreRecordedThenPercentilesAreWithinRelativeError() {
+        Histogram histogram = new Histogram();
+        for (long value = 1_000; value <= 1_000_000; value += 1_000) histogram.record(value);
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1_000_000, snapshot.getMax());
+        assertTrue(Math.abs(snapshot.getMedian() - 500_000) <= 500_000 / 16);
+        assertTrue(Math.abs(snapshot.getPercentile99() - 990_000) <= 990_000 / 16);
+        assertTrue(Math.abs(snapshot.getMin() - 1_000) <= 1_000 / 16);
+    }
+
+    @Test
+    public void whenValueIsAboveMaximumThenItIsCountedInTheHighestBucket() {
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        assertEquals(Histogram.MAX_VALUE, snapshot.getMedian());
+    }
+
+    @Test
+    public void whenValueIsNegativeThenItIsRecordedAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-1);
+        assertEquals(0, histogram.getSnapshot().getMax());
+        assertEquals(1, histogram.getSnapshot().getCount());
+    }
+
+    @Test
+    public void bucketsCoverValuesWithoutGaps() {
+        for (int index = 0; index < Histogram.index(Histogram.MAX_VALUE); index++) {
+            assertEquals(index, Histogram.index(Histogram.lowestValue(index)));
+            assertEquals(index, Histogram.index(Histogram.highestValue(index)));
+            assertEquals(Histogram.highestValue(index) + 1, Histogram.lowestValue(index + 1));
+        }
+    }
+}
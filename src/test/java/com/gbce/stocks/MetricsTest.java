@@ -0,0 +1,97 @@
+package com.gbce.stocks;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class MetricsTest {
+
+    @After
+    public void disable() {
+        Metrics.setEnabled(false);
+    }
+
+    @Test
+    public void whenMetricsAreDisabledThenNothingIsRecorded() {
+        Stock stock = StockFactory.getStock("POP");
+        stock.buy(10, BigDecimal.TEN);
+        stock.getTrades();
+        assertFalse(Metrics.isEnabled());
+        assertEquals(0, stock.getMetrics().getTradeCount());
+        assertEquals(0, stock.getMetrics().getLockWait().getCount());
+        assertEquals(0, stock.getMetrics().getTradesCopied().getCount());
+    }
+
+    @Test
+    public void whenMetricsAreEnabledThenTradesAreRecorded() {
+        Stock stock = StockFactory.getStock("POP");
+        stock.buy(10, BigDecimal.TEN);
+        Metrics.setEnabled(true);
+        stock.buy(10, BigDecimal.TEN);
+        Instant now = Instant.now();
+        stock.tradeBatch(new TradeBatch().sell(1, BigDecimal.ONE, now).sell(1, BigDecimal.ONE, now));
+        stock.getTrades();
+        Metrics.setEnabled(false);
+        stock.buy(10, BigDecimal.TEN);
+
+        StockMetrics metrics = stock.getMetrics();
+        assertEquals(3, metrics.getTradeCount());
+        assertEquals(1, metrics.getBatchCount());
+        assertEquals(2, metrics.getLockWait().getCount());
+        assertEquals(4, metrics.getTradesCopied().getMax());
+        assertEquals(5, metrics.getWindowSize());
+    }
+
+    @Test
+    public void whenMetricsAreEnabledThenIndexCalculationsAreRecorded() {
+        Stock stock = StockFactory.getStock("POP");
+        StockIndex index = new StockIndex("GBCE", Collections.singleton(stock));
+        Metrics.setEnabled(true);
+        stock.buy(10, BigDecimal.TEN);
+        index.calculate();
+        index.calculate();
+
+        StockIndexMetrics metrics = index.getMetrics();
+        assertEquals(1, metrics.getCalculationCount());
+        assertEquals(1, metrics.getEvaluatedConstituents().getMax());
+        assertEquals(2, metrics.getCalculateLatency().getCount());
+    }
+
+    @Test
+    public void whenMetricsAreRegisteredThenTheyCanBeReadThroughJmx() throws JMException {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        Stock stock = StockFactory.getStock("POP");
+        StockIndex index = new StockIndex("GBCE", Collections.singleton(stock));
+        ObjectName stockName = Metrics.register(server, stock);
+        ObjectName indexName = Metrics.register(server, index);
+        Metrics.setEnabled(true);
+        stock.buy(10, BigDecimal.TEN);
+        index.calculate();
+
+        assertEquals(new ObjectName("com.gbce.stocks:type=Stock,name=\"POP\""), stockName);
+        assertEquals("POP", server.getAttribute(stockName, "StockSymbol"));
+        assertEquals(1L, server.getAttribute(stockName, "TradeCount"));
+        assertEquals(1L, ((CompositeData) server.getAttribute(stockName, "LockWait")).get("count"));
+        assertEquals(1L, server.getAttribute(indexName, "CalculationCount"));
+        assertTrue(server.isRegistered(indexName));
+    }
+
+    @Test(expected = JMException.class)
+    public void registerShouldThrowExceptionWhenStockIsAlreadyRegistered() throws JMException {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        Metrics.register(server, StockFactory.getStock("POP"));
+        Metrics.register(server, StockFactory.getStock("POP"));
+    }
+}
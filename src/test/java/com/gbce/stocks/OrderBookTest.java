@@ -0,0 +1,153 @@
+package com.gbce.stocks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class OrderBookTest {
+
+    private Stock stock;
+
+    private OrderBook book;
+
+    @Before
+    public void init() {
+        stock = StockFactory.getStock("POP");
+        book = new OrderBook(stock);
+    }
+
+    @Test
+    public void whenOrdersDoNotCrossThenTheyRestInTheBook() {
+        book.buy(10, new BigDecimal("9.5"));
+        book.buy(5, new BigDecimal("9.75"));
+        book.sell(7, new BigDecimal("10.25"));
+        book.sell(3, new BigDecimal("10.25"));
+
+        assertEquals(new BigDecimal("9.75"), book.getBestBid());
+        assertEquals(new BigDecimal("10.25"), book.getBestAsk());
+        assertEquals(10, book.getAskQuantity(new BigDecimal("10.25")));
+        assertEquals(10, book.getBidQuantity(new BigDecimal("9.50")));
+        assertEquals(2, book.getBidLevels());
+        assertEquals(1, book.getAskLevels());
+        assertEquals(4, book.getRestingOrders());
+        assertNull(stock.getLastTrade());
+    }
+
+    @Test
+    public void whenBuyCrossesAsksThenItIsFilledAtTheirPricesBestPriceFirst() {
+        book.sell(5, new BigDecimal("10.50"));
+        book.sell(5, new BigDecimal("10.25"));
+        long id = book.buy(8, new BigDecimal("11"));
+
+        List<Trade> trades = stock.getTrades();
+        assertEquals(2, trades.size());
+        assertTrade(trades.get(0), 5, "10.25", Trade.TradeIndicator.BUY);
+        assertTrade(trades.get(1), 3, "10.50", Trade.TradeIndicator.BUY);
+        assertEquals(OrderBook.FILLED, id);
+        assertEquals(2, book.getAskQuantity(new BigDecimal("10.50")));
+        assertNull(book.getBestBid());
+    }
+
+    @Test
+    public void whenSellCrossesBidsAtTheSamePriceThenTheOldestIsFilledFirst() {
+        long first = book.buy(5, BigDecimal.TEN);
+        long second = book.buy(5, BigDecimal.TEN);
+        book.sell(7, new BigDecimal("9"));
+
+        assertTrade(stock.getTrades().get(0), 5, "10", Trade.TradeIndicator.SELL);
+        assertTrade(stock.getTrades().get(1), 2, "10", Trade.TradeIndicator.SELL);
+        assertEquals(0, book.getRestingQuantity(first));
+        assertEquals(3, book.getRestingQuantity(second));
+    }
+
+    @Test
+    public void whenOrderIsNotFilledInFullThenTheRestRestsAtItsPrice() {
+        book.sell(5, BigDecimal.TEN);
+        long id = book.buy(8, new BigDecimal("10.5"));
+
+        assertEquals(3, book.getRestingQuantity(id));
+        assertEquals(new BigDecimal("10.5"), book.getBestBid());
+        assertNull(book.getBestAsk());
+    }
+
+    @Test
+    public void whenOrderIsCancelledThenItIsNotMatched() {
+        long first = book.sell(5, BigDecimal.TEN);
+        book.sell(5, new BigDecimal("11"));
+        assertTrue(book.cancel(first));
+        assertFalse(book.cancel(first));
+        book.buy(5, new BigDecimal("11"));
+
+        assertEquals(1, stock.getTrades().size());
+        assertTrade(stock.getLastTrade(), 5, "11", Trade.TradeIndicator.BUY);
+        assertEquals(0, book.getAskLevels());
+        assertEquals(0, book.getRestingOrders());
+    }
+
+    @Test
+    public void whenOrderInTheMiddleOfLevelIsCancelledThenOthersKeepTheirPriority() {
+        long first = book.buy(1, BigDecimal.TEN);
+        long second = book.buy(2, BigDecimal.TEN);
+        long third = book.buy(3, BigDecimal.TEN);
+        book.cancel(second);
+        book.sell(4, BigDecimal.TEN);
+
+        assertEquals(0, book.getRestingQuantity(first));
+        assertEquals(0, book.getRestingQuantity(second));
+        assertEquals(0, book.getRestingQuantity(third));
+        assertEquals(2, stock.getTrades().size());
+        assertEquals(3, stock.getLastTrade().getQuantity());
+        assertEquals(0, book.getBidLevels());
+    }
+
+    @Test
+    public void whenSlotOfFilledOrderIsReusedThenItsIdIsNotValidAnymore() {
+        long filled = book.buy(1, BigDecimal.TEN);
+        book.sell(1, BigDecimal.TEN);
+        long resting = book.buy(1, BigDecimal.ONE);
+
+        assertFalse(book.cancel(filled));
+        assertEquals(1, book.getRestingQuantity(resting));
+    }
+
+    @Test
+    public void whenBookGrowsBeyondItsInitialSizeThenOrdersAreKeptInPriceOrder() {
+        for (int i = 1; i <= 5_000; i++) book.buy(1, BigDecimal.valueOf(i, 2));
+        assertEquals(5_000, book.getBidLevels());
+        book.sell(5_000, new BigDecimal("0.01"));
+
+        List<Trade> trades = stock.getTrades();
+        assertEquals(5_000, trades.size());
+        assertEquals(new BigDecimal("50.00"), trades.get(0).getPrice());
+        assertEquals(new BigDecimal("0.01"), trades.get(4_999).getPrice());
+        assertEquals(0, book.getRestingOrders());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buyShouldThrowExceptionWhenQuantityIsNotMoreThanZero() {
+        book.buy(0, BigDecimal.ONE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sellShouldThrowExceptionWhenPriceHasMoreThan8DecimalPlaces() {
+        book.sell(1, new BigDecimal("0.000000001"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorShouldThrowExceptionWhenStockIsNotSpecified() {
+        new OrderBook(null);
+    }
+
+    private static void assertTrade(Trade trade, long quantity, String price, Trade.TradeIndicator indicator) {
+        assertEquals(quantity, trade.getQuantity());
+        assertEquals(new BigDecimal(price), trade.getPrice());
+        assertEquals(indicator, trade.getIndicator());
+    }
+}
@@ -0,0 +1,32 @@
+package com.gbce.stocks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class RecordingSubscriber<T> implements Subscriber<T> {
+
+    public Subscription subscription;
+    public final List<T> updates = new ArrayList<>();
+    public Throwable error;
+    public boolean completed;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(T update) {
+        updates.add(update);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+        completed = true;
+    }
+}
@@ -0,0 +1,48 @@
+package com.gbce.stocks;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class RetentionPolicyTest {
+
+    private static final long NOW = TradeStore.toEpochNanos(Instant.now());
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test(expected = NullPointerException.class)
+    public void maxAgeShouldThrowExceptionWhenMaxAgeIsNotSpecified() {
+        RetentionPolicy.maxAge(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxAgeShouldThrowExceptionWhenMaxAgeIsZero() {
+        RetentionPolicy.maxAge(Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxCountShouldThrowExceptionWhenMaxCountIsZero() {
+        RetentionPolicy.maxCount(0);
+    }
+
+    @Test
+    public void whenPolicyIsUnboundedThenTradesAreNeverPruned() {
+        assertFalse(RetentionPolicy.unbounded().isExceeded(Integer.MAX_VALUE, 0, NOW));
+    }
+
+    @Test
+    public void whenOldestTradeIsOlderThanMaxAgeThenTradeIsPruned() {
+        assertTrue(RetentionPolicy.maxAge(Duration.ofMinutes(1)).isExceeded(1, NOW - 61 * SECOND, NOW));
+        assertFalse(RetentionPolicy.maxAge(Duration.ofMinutes(1)).isExceeded(1, NOW - 60 * SECOND, NOW));
+    }
+
+    @Test
+    public void whenNumberOfTradesIsMoreThanMaxCountThenTradeIsPruned() {
+        assertTrue(RetentionPolicy.maxCount(10).isExceeded(11, NOW, NOW));
+        assertFalse(RetentionPolicy.maxCount(10).isExceeded(10, NOW, NOW));
+    }
+}
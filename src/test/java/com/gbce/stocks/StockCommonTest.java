@@ -42,4 +42,17 @@ public class StockCommonTest {
     public void whenThereHaveNotBeenAnyTradesDoneYetThenDividendYieldIsNull()  {
         assertNull(stock.getDividendYield());
     }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedThenDividendYieldIsRoundedToItsScale() {
+        stock.setFixedPoint(FixedPoint.ofScale(4));
+        stock.sell(1, BigDecimal.valueOf(15));
+        assertEquals(new BigDecimal("0.5333"), stock.getDividendYield());
+    }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedAndThereHaveNotBeenAnyTradesDoneYetThenDividendYieldIsNull() {
+        stock.setFixedPoint(FixedPoint.ofScale(4));
+        assertNull(stock.getDividendYield());
+    }
 }
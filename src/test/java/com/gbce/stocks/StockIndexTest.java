@@ -4,10 +4,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
 
 public class StockIndexTest {
 
@@ -48,4 +56,174 @@ public class StockIndexTest {
         ginPreferredStock.sell(1, BigDecimal.valueOf(9));
         assertEquals(new BigDecimal("3.94"), BigDecimal.valueOf(stockIndex.calculate()).setScale(2, BigDecimal.ROUND_HALF_EVEN));
     }
+
+    @Test
+    public void whenTradesHaveBeenDoneAfterCalculationThenStockIndexIsCalculatedAgainCorrectly() {
+        teaCommonStock.sell(1, BigDecimal.valueOf(1));
+        popCommonStock.sell(1, BigDecimal.valueOf(3));
+        assertEquals(new BigDecimal("1.25"), BigDecimal.valueOf(stockIndex.calculate()).setScale(2, BigDecimal.ROUND_HALF_EVEN));
+        aleCommonStock.sell(1, BigDecimal.valueOf(5));
+        joeCommonStock.sell(1, BigDecimal.valueOf(7));
+        ginPreferredStock.sell(1, BigDecimal.valueOf(9));
+        assertEquals(new BigDecimal("3.94"), BigDecimal.valueOf(stockIndex.calculate()).setScale(2, BigDecimal.ROUND_HALF_EVEN));
+        teaCommonStock.buy(1, BigDecimal.valueOf(3));
+        assertEquals(new BigDecimal("4.52"), BigDecimal.valueOf(stockIndex.calculate()).setScale(2, BigDecimal.ROUND_HALF_EVEN));
+    }
+
+    @Test
+    public void whenStockIndexHasManyConstituentsThenStockIndexIsCalculatedWithoutOverflow() {
+        Set<Stock> stocks = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            Stock stock = new StockCommon("S" + i, 100, 8);
+            stock.buy(1, BigDecimal.valueOf(10_000));
+            stocks.add(stock);
+        }
+        assertEquals(10_000.0, new StockIndex("All Share", stocks).calculate(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setParallelEvaluationShouldThrowExceptionWhenThresholdIsZero() {
+        stockIndex.setParallelEvaluation(ForkJoinPool.commonPool(), 0);
+    }
+
+    @Test
+    public void whenConstituentsAreEvaluatedInParallelThenStockIndexIsEqualToTheOneEvaluatedSequentially() {
+        Set<Stock> stocks = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 3_000; i++) {
+            Stock stock = new StockCommon("S" + i, 100, 8);
+            if (i % 7 != 0) stock.buy(1 + random.nextInt(100), BigDecimal.valueOf(1 + random.nextInt(100_000), 2));
+            stocks.add(stock);
+        }
+        StockIndex sequential = new StockIndex("Sequential", stocks);
+        sequential.setParallelEvaluation(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        StockIndex parallel = new StockIndex("Parallel", stocks);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.setParallelEvaluation(pool, 1);
+            assertEquals(sequential.calculate(), parallel.calculate(), 1e-9);
+
+            stocks.stream().limit(1_000).forEach(stock -> stock.sell(1 + random.nextInt(100), BigDecimal.valueOf(1 + random.nextInt(100_000), 2)));
+            assertEquals(sequential.calculate(), parallel.calculate(), 1e-9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void whenConstituentsHaveBeenTradedThenSubscriberGetsNewIndexValues() {
+        RecordingSubscriber<Double> subscriber = new RecordingSubscriber<>();
+        stockIndex.subscribe(subscriber, Runnable::run);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(1, subscriber.updates.size());
+        assertEquals(0.0, subscriber.updates.get(0));
+
+        teaCommonStock.buy(1, new BigDecimal(243));
+        assertEquals(2, subscriber.updates.size());
+        assertEquals(stockIndex.calculate(), subscriber.updates.get(1));
+
+        subscriber.subscription.cancel();
+        popCommonStock.buy(1, new BigDecimal(2));
+        assertEquals(2, subscriber.updates.size());
+    }
+
+    @Test
+    public void whenClockIsSetThenTradesAgeOutOfIndexByIt() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        for (Stock stock : stocks) stock.setClock(clock);
+        stockIndex.setClock(clock);
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        clock.set(start.plus(Duration.ofMinutes(4)));
+        popCommonStock.sell(1, BigDecimal.valueOf(9));
+        // geometric mean of all five constituents, two of them traded
+        assertEquals(Math.pow(4 * 9, 1.0 / 5), stockIndex.calculate(), 1e-9);
+        clock.set(start.plus(Duration.ofMinutes(6)));
+        assertEquals(Math.pow(9, 1.0 / 5), stockIndex.calculate(), 1e-9);
+    }
+
+    @Test
+    public void whenStockIsAddedThenStockIndexIsCalculatedWithIt() {
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        assertEquals(Math.pow(4, 1.0 / 5), stockIndex.calculate(), 1e-9);
+        Stock stock = StockFactory.getStock("JOE");
+        stock.sell(1, BigDecimal.valueOf(9));
+        assertTrue(stockIndex.addStock(stock));
+        assertFalse(stockIndex.addStock(stock));
+        assertEquals(Math.pow(4 * 9, 1.0 / 6), stockIndex.calculate(), 1e-9);
+        assertEquals(6, stockIndex.getStocks().size());
+    }
+
+    @Test
+    public void whenStockIsRemovedThenStockIndexIsCalculatedWithoutIt() {
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        popCommonStock.sell(1, BigDecimal.valueOf(9));
+        assertEquals(Math.pow(4 * 9, 1.0 / 5), stockIndex.calculate(), 1e-9);
+        assertTrue(stockIndex.removeStock(popCommonStock));
+        assertFalse(stockIndex.removeStock(popCommonStock));
+        assertEquals(Math.pow(4, 1.0 / 4), stockIndex.calculate(), 1e-9);
+        // trades of a removed stock do not change the index anymore
+        popCommonStock.sell(1, BigDecimal.valueOf(1_000));
+        assertEquals(Math.pow(4, 1.0 / 4), stockIndex.calculate(), 1e-9);
+        assertFalse(stockIndex.getStocks().contains(popCommonStock));
+    }
+
+    @Test
+    public void whenAllStocksAreRemovedThenStockIndexIsCalculatedToZero() {
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        stockIndex.calculate();
+        for (Stock stock : stocks) stockIndex.removeStock(stock);
+        assertEquals(0.0, stockIndex.calculate());
+    }
+
+    @Test
+    public void whenStockSetIsChangedThenStockIndexIsNot() {
+        stocks.remove(teaCommonStock);
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        assertEquals(Math.pow(4, 1.0 / 5), stockIndex.calculate(), 1e-9);
+        assertEquals(5, stockIndex.getStocks().size());
+    }
+
+    @Test
+    public void whenIndicesShareStocksThenTheyAreCalculatedTheSame() {
+        teaCommonStock.sell(3, BigDecimal.valueOf(4));
+        teaCommonStock.buy(1, BigDecimal.valueOf(8));
+        StockIndex other = new StockIndex("Tea", Collections.singleton(teaCommonStock));
+        assertEquals(5.0, other.calculate(), 1e-9);
+        assertEquals(Math.pow(5, 1.0 / 5), stockIndex.calculate(), 1e-9);
+        teaCommonStock.sell(4, BigDecimal.valueOf(1));
+        assertEquals(3.0, other.calculate(), 1e-9);
+        assertEquals(Math.pow(3, 1.0 / 5), stockIndex.calculate(), 1e-9);
+    }
+
+    @Test
+    public void whenIndexIsClosedThenTradesDoNotChangeIt() {
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        double value = stockIndex.calculate();
+        stockIndex.close();
+        teaCommonStock.sell(1, BigDecimal.valueOf(1_000));
+        assertEquals(value, stockIndex.calculate());
+    }
+
+    @Test
+    public void whenIndexIsClosedThenSubscriptionsAreCompleted() {
+        RecordingSubscriber<Double> subscriber = new RecordingSubscriber<>();
+        stockIndex.subscribe(subscriber, Runnable::run);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        stockIndex.close();
+        assertTrue(subscriber.completed);
+        teaCommonStock.sell(1, BigDecimal.valueOf(4));
+        assertEquals(1, subscriber.updates.size());
+
+        RecordingSubscriber<Double> late = new RecordingSubscriber<>();
+        stockIndex.subscribe(late, Runnable::run);
+        assertTrue(late.completed);
+        assertNull(late.error);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addStockShouldThrowExceptionWhenIndexIsClosed() {
+        stockIndex.close();
+        stockIndex.addStock(StockFactory.getStock("JOE"));
+    }
 }
@@ -7,6 +7,7 @@ import java.math.BigDecimal;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
 
 public class StockPreferredTest {
 
@@ -47,4 +48,32 @@ public class StockPreferredTest {
     public void whenThereHaveNotBeenAnyTradesDoneYetThenDividendYieldIsNull()  {
         assertNull(stock.getDividendYield());
     }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedThenDividendYieldIsRoundedToItsScale() {
+        stock.setFixedPoint(FixedPoint.ofScale(4));
+        stock.sell(1, BigDecimal.valueOf(15));
+        assertEquals(new BigDecimal("0.1333"), stock.getDividendYield());
+    }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedAndThereHaveNotBeenAnyTradesDoneYetThenDividendYieldIsNull() {
+        stock.setFixedPoint(FixedPoint.ofScale(4));
+        assertNull(stock.getDividendYield());
+    }
+
+    @Test
+    public void whenNoTradeHasBeenDoneSinceThenDividendYieldIsTakenFromCache() {
+        stock.sell(1, BigDecimal.valueOf(15));
+        assertSame(stock.getDividendYield(), stock.getDividendYield());
+    }
+
+    @Test
+    public void whenTradeIsDoneThenDividendYieldIsEvaluatedForNewLastTrade() {
+        stock.setFixedPoint(FixedPoint.ofScale(4));
+        stock.sell(1, BigDecimal.valueOf(15));
+        assertEquals(new BigDecimal("0.1333"), stock.getDividendYield());
+        stock.buy(1, BigDecimal.valueOf(40));
+        assertEquals(new BigDecimal("0.0500"), stock.getDividendYield());
+    }
 }
@@ -0,0 +1,140 @@
+package com.gbce.stocks;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class StockSnapshotterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenStocksHaveBeenSnapshotThenTheyAreRestored() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Stock tea = StockFactory.getStock("TEA");
+        Stock pop = StockFactory.getStock("POP");
+        tea.buy(1, BigDecimal.ONE);
+        pop.sell(2, BigDecimal.TEN);
+        try (StockSnapshotter snapshotter = new StockSnapshotter(Arrays.asList(tea, pop), directory, Duration.ofDays(1))) {
+            snapshotter.snapshot();
+        }
+
+        Stock restoredTea = StockFactory.getStock("TEA");
+        Stock restoredPop = StockFactory.getStock("POP");
+        try (StockSnapshotter snapshotter = new StockSnapshotter(Arrays.asList(restoredTea, restoredPop), directory, Duration.ofDays(1))) {
+            assertTrue(snapshotter.restore(restoredTea));
+            assertTrue(snapshotter.restore(restoredPop));
+            assertFalse(snapshotter.restore(StockFactory.getStock("GIN")));
+        }
+        assertEquals(1, restoredTea.getTrades().size());
+        assertEquals(BigDecimal.TEN, restoredPop.getLastTrade().getPrice());
+        assertEquals(2, restoredPop.getLastTrade().getQuantity());
+    }
+
+    @Test
+    public void whenStockHasNotBeenTradedSinceSnapshotThenItIsSkipped() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Stock tea = StockFactory.getStock("TEA");
+        tea.buy(1, BigDecimal.ONE);
+        try (StockSnapshotter snapshotter = new StockSnapshotter(Arrays.asList(tea), directory, Duration.ofDays(1))) {
+            snapshotter.snapshot();
+            Path path = directory.resolve("TEA.snapshot");
+            FileTime written = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(path, written);
+            snapshotter.snapshot();
+            assertEquals(written, Files.getLastModifiedTime(path));
+            tea.buy(1, BigDecimal.ONE);
+            snapshotter.snapshot();
+            assertFalse(written.equals(Files.getLastModifiedTime(path)));
+        }
+    }
+
+    @Test
+    public void whenSnapshotsAreWrittenConcurrentlyThenOneOfThemIsRestored() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Stock tea = StockFactory.getStock("TEA");
+        for (int i = 0; i < 1000; i++) tea.buy(1, BigDecimal.ONE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                writes.add(executor.submit(() -> {
+                    tea.writeSnapshot(directory.resolve("TEA.snapshot"));
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) write.get();
+        } finally {
+            executor.shutdown();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        Stock restored = StockFactory.getStock("TEA");
+        try (StockSnapshotter snapshotter = new StockSnapshotter(Arrays.asList(restored), directory, Duration.ofDays(1))) {
+            assertTrue(snapshotter.restore(restored));
+        }
+        assertEquals(1000, restored.getTrades().size());
+    }
+
+    @Test
+    public void whenIntervalHasPassedThenSnapshotIsWrittenInTheBackground() throws InterruptedException {
+        Path directory = folder.getRoot().toPath();
+        Stock tea = StockFactory.getStock("TEA");
+        tea.buy(1, BigDecimal.ONE);
+        List<Stock> stocks = Arrays.asList(tea);
+        StockSnapshotter snapshotter = new StockSnapshotter(stocks, directory, Duration.ofMillis(10));
+        try {
+            for (int i = 0; i < 500 && !Files.exists(directory.resolve("TEA.snapshot")); i++) Thread.sleep(10);
+        } finally {
+            snapshotter.close();
+        }
+        assertTrue(Files.exists(directory.resolve("TEA.snapshot")));
+    }
+
+    @Test
+    public void whenSnapshotOfStockCannotBeWrittenThenOtherStocksAreSnapshotInTheBackground() throws IOException, InterruptedException {
+        Path directory = folder.getRoot().toPath();
+        Stock escaping = new StockCommon("../ESC", 100, 0);
+        Stock tea = StockFactory.getStock("TEA");
+        escaping.buy(1, BigDecimal.ONE);
+        tea.buy(1, BigDecimal.ONE);
+        StockSnapshotter snapshotter = new StockSnapshotter(Arrays.asList(escaping, tea), directory, Duration.ofMillis(10));
+        try {
+            for (int i = 0; i < 500 && snapshotter.getFailure() == null; i++) Thread.sleep(10);
+            assertTrue(snapshotter.getFailure() instanceof IllegalArgumentException);
+            // the failure has not cancelled the next snapshots
+            Files.deleteIfExists(directory.resolve("TEA.snapshot"));
+            tea.buy(1, BigDecimal.ONE);
+            for (int i = 0; i < 500 && !Files.exists(directory.resolve("TEA.snapshot")); i++) Thread.sleep(10);
+        } finally {
+            snapshotter.close();
+        }
+        assertTrue(Files.exists(directory.resolve("TEA.snapshot")));
+        assertFalse(Files.exists(directory.getParent().resolve("ESC.snapshot")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionWhenIntervalIsZero() {
+        new StockSnapshotter(Arrays.asList(), folder.getRoot().toPath(), Duration.ZERO);
+    }
+}
@@ -1,26 +1,42 @@
 package com.gbce.stocks;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertNull;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertSame;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 
 public class StockTest {
 
     private static final int QUANTITY = 1;
     private static final int NUMBER_OF_TRANSACTIONS = 1_000_000;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private Stock teaStock;
     private Stock popStock;
 
@@ -78,7 +94,9 @@ public class StockTest {
         Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()).invokeAll(transactions);
         countDownLatch.await();
 
-        Iterator<Trade> it = teaStock.getTrades().iterator();
+        List<Trade> trades = teaStock.getTrades();
+        assertEquals(NUMBER_OF_TRANSACTIONS, trades.size());
+        Iterator<Trade> it = trades.iterator();
         Trade trade = it.next();
         while (it.hasNext()) {
             Trade nextTrade = it.next();
@@ -158,4 +176,801 @@ public class StockTest {
         popStock.buy(34, BigDecimal.valueOf(13));
         assertEquals(new BigDecimal("12.60"), popStock.getVolumeWeightedStockPrice().setScale(2, BigDecimal.ROUND_HALF_EVEN));
     }
+
+    @Test
+    public void whenTradesHaveBeenDoneThenVolumeWeightedStockPriceForTheLastFiveMinutesIsEqualToTheOneEvaluatedForTheSameTimestamp() {
+        Instant instant = Instant.now().minusMillis(300_000);
+        IntStream.rangeClosed(1, 100).forEach(element -> popStock.buy(element, BigDecimal.valueOf(element)));
+        IntStream.rangeClosed(1, 100).forEach(element -> popStock.sell(element, new BigDecimal("0.5")));
+        assertEquals(0, popStock.getVolumeWeightedStockPrice(instant).compareTo(popStock.getVolumeWeightedStockPrice()));
+    }
+
+    @Test
+    public void whenRetentionPolicyLimitsNumberOfTradesThenOldestTradesArePrunedAndArchived() {
+        List<Trade> archived = new ArrayList<>();
+        teaStock.setTradeArchive(archived::addAll);
+        teaStock.setRetentionPolicy(RetentionPolicy.maxCount(10));
+        IntStream.rangeClosed(1, 25).forEach(element -> teaStock.buy(element, BigDecimal.ONE));
+        assertEquals(10, teaStock.getTrades().size());
+        assertEquals(16, teaStock.getTrades().get(0).getQuantity());
+        assertEquals(15, archived.size());
+        assertEquals(1, archived.get(0).getQuantity());
+    }
+
+    @Test
+    public void whenRetentionPolicyIsSetThenTradesWhichAreNotRetainedArePrunedImmediately() {
+        IntStream.rangeClosed(1, 25).forEach(element -> teaStock.buy(QUANTITY, BigDecimal.ONE));
+        teaStock.setRetentionPolicy(RetentionPolicy.maxCount(5));
+        assertEquals(5, teaStock.getTrades().size());
+    }
+
+    @Test
+    public void whenRetentionPolicyLimitsAgeThenTradesWithinMaxAgeAreRetained() {
+        teaStock.setRetentionPolicy(RetentionPolicy.maxAge(Duration.ofMinutes(1)));
+        IntStream.rangeClosed(1, 25).forEach(element -> teaStock.buy(QUANTITY, BigDecimal.ONE));
+        assertEquals(25, teaStock.getTrades().size());
+    }
+
+    @Test
+    public void whenTradesHaveNotBeenPrunedThenAllTradesAreRetained() {
+        teaStock.buy(QUANTITY, BigDecimal.ONE);
+        assertTrue(teaStock.isRetainedSince(Instant.EPOCH));
+    }
+
+    @Test
+    public void whenTradesHaveBeenPrunedThenQueryReachingBackPastRetentionHorizonIsNotRetained() throws InterruptedException {
+        teaStock.setRetentionPolicy(RetentionPolicy.maxCount(1));
+        teaStock.buy(QUANTITY, BigDecimal.ONE);
+        Thread.sleep(1);
+        Instant instant = Instant.now();
+        teaStock.buy(QUANTITY, BigDecimal.ONE);
+        assertFalse(teaStock.isRetainedSince(Instant.EPOCH));
+        assertTrue(teaStock.isRetainedSince(instant));
+    }
+
+    @Test
+    public void whenTradesInTheLastFiveMinutesHaveBeenPrunedThenVolumeWeightedStockPriceIsEvaluatedForRetainedTrades() {
+        popStock.setRetentionPolicy(RetentionPolicy.maxCount(1));
+        popStock.sell(23, BigDecimal.valueOf(12));
+        popStock.buy(34, BigDecimal.valueOf(13));
+        assertEquals(new BigDecimal("13.00"), popStock.getVolumeWeightedStockPrice().setScale(2, BigDecimal.ROUND_HALF_EVEN));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenPriceHasMoreThanEightDecimalPlacesThenTradeIsRejected() {
+        teaStock.buy(QUANTITY, new BigDecimal("1.000000001"));
+    }
+
+    @Test
+    public void whenTradeHasBeenDoneThenLastTradeHasTheSamePriceAsTraded() {
+        teaStock.sell(QUANTITY, new BigDecimal("12.340"));
+        assertEquals(new BigDecimal("12.340"), teaStock.getLastTrade().getPrice());
+    }
+
+    @Test
+    public void whenTradesAreBeingDoneThenConcurrentReadersSeeConsistentSnapshots() throws InterruptedException {
+        Thread writer = new Thread(() -> IntStream.range(0, 200_000).forEach(element -> teaStock.buy(2, BigDecimal.valueOf(3))));
+        writer.start();
+        while (writer.isAlive()) {
+            BigDecimal volumeWeightedStockPrice = teaStock.getVolumeWeightedStockPrice();
+            if (volumeWeightedStockPrice != null) assertEquals(0, BigDecimal.valueOf(3).compareTo(volumeWeightedStockPrice));
+            List<Trade> trades = teaStock.getTrades();
+            if (!trades.isEmpty()) assertTrue(trades.get(trades.size() - 1).getTimestamp().compareTo(teaStock.getLastTrade().getTimestamp()) <= 0);
+        }
+        writer.join();
+        assertEquals(200_000, teaStock.getTrades().size());
+    }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedThenVolumeWeightedStockPriceIsRoundedToItsScale() {
+        popStock.setFixedPoint(FixedPoint.ofScale(2));
+        popStock.sell(23, BigDecimal.valueOf(12));
+        popStock.buy(34, BigDecimal.valueOf(13));
+        assertEquals(new BigDecimal("12.60"), popStock.getVolumeWeightedStockPrice());
+        assertEquals(new BigDecimal("12.60"), popStock.getVolumeWeightedStockPrice(Instant.EPOCH));
+    }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedThenPERatioIsRoundedToItsScale() {
+        popStock.setFixedPoint(FixedPoint.ofScale(2));
+        popStock.sell(QUANTITY, new BigDecimal(357));
+        assertEquals(new BigDecimal("44.62"), popStock.getPERatio());
+    }
+
+    @Test
+    public void whenFixedPointArithmeticIsUsedAndLastDividendIsZeroThenPERatioCannotBeEvaluated() {
+        teaStock.setFixedPoint(FixedPoint.pennies());
+        teaStock.buy(QUANTITY, BigDecimal.ONE);
+        assertNull(teaStock.getPERatio());
+    }
+
+    @Test
+    public void whenSubscriberHasNotRequestedUpdatesThenNoUpdatesAreDelivered() {
+        RecordingSubscriber<StockUpdate> subscriber = new RecordingSubscriber<>();
+        popStock.subscribe(subscriber, Runnable::run, 16);
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        assertTrue(subscriber.updates.isEmpty());
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.updates.size());
+        assertEquals(1, subscriber.updates.get(0).getTrades().size());
+        assertEquals("POP", subscriber.updates.get(0).getStockSymbol());
+    }
+
+    @Test
+    public void whenTradesHaveBeenDoneWithoutDemandThenTheyAreDeliveredInOneUpdate() {
+        RecordingSubscriber<StockUpdate> subscriber = new RecordingSubscriber<>();
+        popStock.subscribe(subscriber, Runnable::run, 16);
+        popStock.buy(QUANTITY, new BigDecimal(10));
+        popStock.sell(QUANTITY, new BigDecimal(20));
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(1, subscriber.updates.size());
+        StockUpdate update = subscriber.updates.get(0);
+        assertEquals(2, update.getTrades().size());
+        assertEquals(0, update.getSkippedTrades());
+        assertEquals(new BigDecimal(10), update.getTrades().get(0).getPrice());
+        assertEquals(new BigDecimal(20), update.getTrades().get(1).getPrice());
+        assertEquals(new BigDecimal("15.00"), update.getVolumeWeightedStockPrice().setScale(2));
+
+        popStock.buy(QUANTITY, new BigDecimal(30));
+        assertEquals(2, subscriber.updates.size());
+        assertEquals(1, subscriber.updates.get(1).getTrades().size());
+    }
+
+    @Test
+    public void whenSubscriberHasFallenBehindByMoreThanBufferSizeThenOlderTradesAreSkipped() {
+        RecordingSubscriber<StockUpdate> subscriber = new RecordingSubscriber<>();
+        popStock.subscribe(subscriber, Runnable::run, 3);
+        for (int i = 1; i <= 5; i++) popStock.buy(QUANTITY, new BigDecimal(i));
+        subscriber.subscription.request(1);
+        StockUpdate update = subscriber.updates.get(0);
+        assertEquals(2, update.getSkippedTrades());
+        assertEquals(3, update.getTrades().size());
+        assertEquals(new BigDecimal(3), update.getTrades().get(0).getPrice());
+    }
+
+    @Test
+    public void whenSubscriptionHasBeenCancelledThenNoUpdatesAreDelivered() {
+        RecordingSubscriber<StockUpdate> subscriber = new RecordingSubscriber<>();
+        popStock.subscribe(subscriber, Runnable::run, 16);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.cancel();
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        assertTrue(subscriber.updates.isEmpty());
+    }
+
+    @Test
+    public void whenSubscriberRequestsNoUpdatesThenSubscriptionFails() {
+        RecordingSubscriber<StockUpdate> subscriber = new RecordingSubscriber<>();
+        popStock.subscribe(subscriber, Runnable::run, 16);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.updates.isEmpty());
+    }
+
+    @Test
+    public void whenSubscriberRequestsNoUpdatesWhileUpdateIsDeliveredThenFailureIsDeliveredAfterIt() throws InterruptedException {
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicBoolean inNext = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        Subscription[] subscription = new Subscription[1];
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            popStock.subscribe(new Subscriber<StockUpdate>() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscription[0] = s;
+                }
+
+                @Override
+                public void onNext(StockUpdate update) {
+                    inNext.set(true);
+                    delivering.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inNext.set(false);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    overlapped.set(inNext.get());
+                    failed.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            }, executor, 16);
+            subscription[0].request(1);
+            popStock.buy(QUANTITY, BigDecimal.ONE);
+            assertTrue(delivering.await(10, TimeUnit.SECONDS));
+            subscription[0].request(0);
+            release.countDown();
+            assertTrue(failed.await(10, TimeUnit.SECONDS));
+            assertFalse(overlapped.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subscribeShouldThrowExceptionWhenBufferSizeIsZero() {
+        popStock.subscribe(new RecordingSubscriber<>(), Runnable::run, 0);
+    }
+
+    @Test
+    public void whenTradesHaveBeenDoneThenTradesInTimeRangeAreReturnedWithoutLaterTrades() throws InterruptedException {
+        popStock.buy(QUANTITY, new BigDecimal(1));
+        Thread.sleep(1);
+        Instant from = Instant.now();
+        popStock.buy(QUANTITY, new BigDecimal(2));
+        popStock.buy(QUANTITY, new BigDecimal(3));
+        Thread.sleep(1);
+        Instant to = Instant.now();
+        popStock.buy(QUANTITY, new BigDecimal(4));
+
+        List<Trade> trades = popStock.getTrades(from, to);
+        popStock.buy(QUANTITY, new BigDecimal(5));
+        assertEquals(2, trades.size());
+        assertEquals(new BigDecimal(2), trades.get(0).getPrice());
+        assertEquals(new BigDecimal(3), trades.get(1).getPrice());
+        assertTrue(popStock.getTrades(to, to).isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void whenTradesInTimeRangeHaveBeenReturnedThenTheyCannotBeModified() {
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        popStock.getTrades(Instant.EPOCH, Instant.now()).add(new Trade(100, BigDecimal.ONE, Instant.now(), Trade.TradeIndicator.BUY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getTradesShouldThrowExceptionWhenFromIsAfterTo() {
+        popStock.getTrades(Instant.now(), Instant.EPOCH);
+    }
+
+    @Test
+    public void whenCursorHasBeenExhaustedThenItResumesWithTradesDoneAfterwards() {
+        IntStream.rangeClosed(1, 3).forEach(element -> popStock.buy(QUANTITY, new BigDecimal(element)));
+        TradeCursor cursor = popStock.getTradeCursor();
+        int read = 0;
+        while (cursor.hasNext()) {
+            assertEquals(new BigDecimal(++read), cursor.next().getPrice());
+        }
+        assertEquals(3, read);
+        assertEquals(3, cursor.getSequence());
+
+        popStock.buy(QUANTITY, new BigDecimal(4));
+        TradeCursor resumed = popStock.getTradeCursor(cursor.getSequence());
+        assertEquals(new BigDecimal(4), resumed.next().getPrice());
+        assertTrue(cursor.hasNext());
+        assertFalse(resumed.hasNext());
+    }
+
+    @Test
+    public void whenTradesHaveBeenPrunedThenCursorSkipsThem() {
+        IntStream.rangeClosed(1, 5).forEach(element -> popStock.buy(QUANTITY, new BigDecimal(element)));
+        TradeCursor cursor = popStock.getTradeCursor(0);
+        popStock.setRetentionPolicy(RetentionPolicy.maxCount(2));
+        popStock.buy(QUANTITY, new BigDecimal(6));
+        assertEquals(new BigDecimal(1), cursor.next().getPrice());
+        while (cursor.hasNext()) cursor.next();
+        TradeCursor pruned = popStock.getTradeCursor(1);
+        assertEquals(new BigDecimal(5), pruned.next().getPrice());
+        assertEquals(5, pruned.getSequence());
+    }
+
+    @Test
+    public void whenTradesAreStreamedInParallelThenAllTradesAreProcessed() {
+        IntStream.rangeClosed(1, 10_000).forEach(element -> popStock.buy(element, BigDecimal.ONE));
+        long quantity = StreamSupport.stream(popStock.getTradeSpliterator(), true).mapToLong(Trade::getQuantity).sum();
+        assertEquals(10_000L * 10_001 / 2, quantity);
+    }
+
+    @Test
+    public void whenBatchHasBeenTradedThenTradesAreDoneWithTimestampsOfTheBatch() {
+        Instant now = Instant.now();
+        TradeBatch batch = new TradeBatch();
+        for (int i = 1; i <= 100; i++) batch.buy(i, new BigDecimal(i), now.minusSeconds(100 - i));
+        batch.sell(1, BigDecimal.ONE, now);
+        popStock.tradeBatch(batch);
+
+        List<Trade> trades = popStock.getTrades();
+        assertEquals(101, trades.size());
+        assertEquals(now.minusSeconds(99), trades.get(0).getTimestamp());
+        assertEquals(now, trades.get(100).getTimestamp());
+        assertEquals(Trade.TradeIndicator.SELL, trades.get(100).getIndicator());
+    }
+
+    @Test
+    public void whenBatchHasTradesBeforeTheLastTradeThenNoTradeOfTheBatchIsDone() {
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        Instant last = popStock.getLastTrade().getTimestamp();
+        TradeBatch batch = new TradeBatch().buy(QUANTITY, BigDecimal.ONE, last.minusNanos(1)).buy(QUANTITY, BigDecimal.ONE, last.plusSeconds(1));
+        try {
+            popStock.tradeBatch(batch);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, popStock.getTrades().size());
+    }
+
+    @Test
+    public void whenBatchHasTradesAfterNowThenLaterTradesAreNotDoneBeforeThem() {
+        Instant future = Instant.now().plusSeconds(60);
+        popStock.tradeBatch(new TradeBatch().buy(QUANTITY, BigDecimal.ONE, future));
+        popStock.sell(QUANTITY, BigDecimal.ONE);
+        assertFalse(popStock.getLastTrade().getTimestamp().isBefore(future));
+    }
+
+    @Test
+    public void whenStockHasBeenRecoveredFromJournalThenItHasTheSameTradesAndVolumeWeightedStockPrice() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("POP");
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch())) {
+            popStock.setTradeJournal(journal);
+            popStock.sell(55, BigDecimal.valueOf(12));
+            popStock.tradeBatch(new TradeBatch().sell(23, new BigDecimal("12.5"), Instant.now()).buy(34, BigDecimal.valueOf(13), Instant.now()));
+        }
+        Stock recovered = StockFactory.getStock("POP");
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch())) {
+            recovered.setTradeJournal(journal);
+            assertEquals(popStock.getTrades().size(), recovered.getTrades().size());
+            assertEquals(new BigDecimal("12.5"), recovered.getTrades().get(1).getPrice());
+            assertEquals(popStock.getLastTrade().getTimestamp(), recovered.getLastTrade().getTimestamp());
+            assertEquals(popStock.getVolumeWeightedStockPrice(), recovered.getVolumeWeightedStockPrice());
+            recovered.buy(QUANTITY, BigDecimal.ONE);
+            assertEquals(4, journal.size());
+        }
+    }
+
+    @Test
+    public void whenStockIsRecoveredFromJournalThenRetentionPolicyIsAppliedWithoutArchiving() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("POP");
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perTrade())) {
+            popStock.setTradeJournal(journal);
+            IntStream.rangeClosed(1, 10).forEach(element -> popStock.buy(QUANTITY, new BigDecimal(element)));
+        }
+        Stock recovered = StockFactory.getStock("POP");
+        List<Trade> archived = new ArrayList<>();
+        recovered.setTradeArchive(archived::addAll);
+        recovered.setRetentionPolicy(RetentionPolicy.maxCount(3));
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perTrade())) {
+            recovered.setTradeJournal(journal);
+        }
+        assertEquals(3, recovered.getTrades().size());
+        assertEquals(new BigDecimal(8), recovered.getTrades().get(0).getPrice());
+        assertTrue(archived.isEmpty());
+    }
+
+    @Test
+    public void setTradeJournalShouldThrowExceptionWhenJournalTradesAreNotInOrder() throws IOException {
+        try (TradeJournal journal = TradeJournal.open(folder.getRoot().toPath().resolve("POP"), SyncPolicy.perBatch())) {
+            journal.append(2_000, 1, 100_000_000, (byte) 0, Trade.TradeIndicator.BUY);
+            journal.append(1_000, 1, 100_000_000, (byte) 0, Trade.TradeIndicator.BUY);
+            journal.endBatch();
+            try {
+                popStock.setTradeJournal(journal);
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(popStock.getTrades().isEmpty());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setTradeJournalShouldThrowExceptionWhenJournalBelongsToAnotherStock() throws IOException {
+        try (TradeJournal journal = TradeJournal.open(folder.getRoot().toPath().resolve("POP"), SyncPolicy.perBatch())) {
+            popStock.setTradeJournal(journal);
+            teaStock.setTradeJournal(journal);
+        }
+    }
+
+    @Test
+    public void whenStockHasBeenRestoredFromSnapshotAndJournalTailThenItHasTheSameTrades() throws IOException {
+        Path journalPath = folder.getRoot().toPath().resolve("POP.journal");
+        Path snapshotPath = folder.getRoot().toPath().resolve("POP.snapshot");
+        try (TradeJournal journal = TradeJournal.open(journalPath, SyncPolicy.perBatch())) {
+            popStock.setTradeJournal(journal);
+            IntStream.rangeClosed(1, 100).forEach(element -> popStock.buy(element, new BigDecimal(element)));
+            popStock.writeSnapshot(snapshotPath);
+            IntStream.rangeClosed(101, 110).forEach(element -> popStock.sell(element, new BigDecimal(element)));
+        }
+
+        Stock restored = StockFactory.getStock("POP");
+        restored.restoreSnapshot(snapshotPath);
+        assertEquals(100, restored.getTrades().size());
+        try (TradeJournal journal = TradeJournal.open(journalPath, SyncPolicy.perBatch())) {
+            restored.setTradeJournal(journal);
+            List<Trade> trades = restored.getTrades();
+            assertEquals(110, trades.size());
+            for (int i = 0; i < trades.size(); i++) {
+                assertEquals(popStock.getTrades().get(i).getPrice(), trades.get(i).getPrice());
+                assertEquals(popStock.getTrades().get(i).getIndicator(), trades.get(i).getIndicator());
+                assertEquals(popStock.getTrades().get(i).getTimestamp(), trades.get(i).getTimestamp());
+            }
+            assertEquals(popStock.getVolumeWeightedStockPrice(), restored.getVolumeWeightedStockPrice());
+            assertEquals(110, restored.getTradeCursor().getSequence() + trades.size());
+        }
+    }
+
+    @Test
+    public void whenTradesHaveBeenPrunedBeforeSnapshotThenRestoredStockKeepsSequenceNumbersAndRetentionHorizon() throws IOException {
+        Path snapshotPath = folder.getRoot().toPath().resolve("POP.snapshot");
+        popStock.setRetentionPolicy(RetentionPolicy.maxCount(5));
+        IntStream.rangeClosed(1, 100).forEach(element -> popStock.sell(QUANTITY, new BigDecimal(element)));
+        popStock.writeSnapshot(snapshotPath);
+
+        Stock restored = StockFactory.getStock("POP");
+        restored.restoreSnapshot(snapshotPath);
+        assertEquals(5, restored.getTrades().size());
+        TradeCursor cursor = restored.getTradeCursor(0);
+        assertTrue(cursor.hasNext());
+        assertEquals(95, cursor.getSequence());
+        assertEquals(new BigDecimal(96), cursor.next().getPrice());
+        assertFalse(restored.isRetainedSince(Instant.EPOCH));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void restoreSnapshotShouldThrowExceptionWhenStockHasTrades() throws IOException {
+        Path snapshotPath = folder.getRoot().toPath().resolve("POP.snapshot");
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        popStock.writeSnapshot(snapshotPath);
+        popStock.restoreSnapshot(snapshotPath);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void restoreSnapshotShouldThrowExceptionWhenSnapshotIsOfAnotherStock() throws IOException {
+        Path snapshotPath = folder.getRoot().toPath().resolve("POP.snapshot");
+        popStock.writeSnapshot(snapshotPath);
+        teaStock.restoreSnapshot(snapshotPath);
+    }
+
+    @Test
+    public void whenTradesHaveBeenDoneThenBarsAreUpdatedIncrementally() {
+        Instant start = Instant.parse("2016-05-16T10:00:00Z");
+        popStock.addBars(Duration.ofMinutes(1), 10);
+        popStock.tradeBatch(new TradeBatch()
+                .buy(10, new BigDecimal("10.5"), start)
+                .sell(20, new BigDecimal("12"), start.plusSeconds(10))
+                .buy(30, new BigDecimal("9.25"), start.plusSeconds(20))
+                .sell(40, new BigDecimal("11"), start.plusSeconds(59))
+                .buy(5, new BigDecimal("20"), start.plusSeconds(180)));
+
+        List<Bar> bars = popStock.getBars(Duration.ofMinutes(1));
+        assertEquals(2, bars.size());
+        Bar bar = bars.get(0);
+        assertEquals(start, bar.getStart());
+        assertEquals(start.plusSeconds(60), bar.getEnd());
+        assertEquals(new BigDecimal("10.5"), bar.getOpen());
+        assertEquals(new BigDecimal("12"), bar.getHigh());
+        assertEquals(new BigDecimal("9.25"), bar.getLow());
+        assertEquals(new BigDecimal("11"), bar.getClose());
+        assertEquals(100, bar.getVolume());
+        assertEquals(4, bar.getNumberOfTrades());
+        assertEquals(new BigDecimal("10.625"), bar.getVolumeWeightedPrice().stripTrailingZeros());
+        assertEquals(start.plusSeconds(180), bars.get(1).getStart());
+        assertEquals(new BigDecimal("20"), bars.get(1).getClose());
+    }
+
+    @Test
+    public void whenMoreBarsThanCapacityHaveBeenStartedThenTheMostRecentOnesAreKept() {
+        Instant start = Instant.parse("2016-05-16T10:00:00Z");
+        popStock.addBars(Duration.ofSeconds(1), 3);
+        TradeBatch batch = new TradeBatch();
+        for (int i = 0; i < 10; i++) batch.buy(QUANTITY, new BigDecimal(i + 1), start.plusMillis(500 * i));
+        popStock.tradeBatch(batch);
+
+        List<Bar> bars = popStock.getBars(Duration.ofSeconds(1));
+        assertEquals(3, bars.size());
+        assertEquals(start.plusSeconds(2), bars.get(0).getStart());
+        assertEquals(new BigDecimal(5), bars.get(0).getOpen());
+        assertEquals(new BigDecimal(10), bars.get(2).getClose());
+    }
+
+    @Test
+    public void whenBarsHaveBeenAddedAfterTradesThenTheyAreBuiltFromRetainedTrades() {
+        IntStream.rangeClosed(1, 5).forEach(element -> popStock.buy(element, new BigDecimal(element)));
+        popStock.addBars(Duration.ofDays(1), 2);
+        popStock.buy(QUANTITY, BigDecimal.TEN);
+        Bar bar = popStock.getBars(Duration.ofDays(1)).get(popStock.getBars(Duration.ofDays(1)).size() - 1);
+        assertEquals(BigDecimal.TEN, bar.getHigh());
+        assertEquals(BigDecimal.TEN, bar.getClose());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getBarsShouldThrowExceptionWhenBarsOfIntervalAreNotKept() {
+        popStock.getBars(Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void whenNoTradeHasBeenDoneSinceThenPERatioIsTakenFromCache() {
+        popStock.buy(10, BigDecimal.valueOf(357));
+        assertSame(popStock.getPERatio(), popStock.getPERatio());
+    }
+
+    @Test
+    public void whenTradeIsDoneThenPERatioIsEvaluatedForNewLastTrade() {
+        popStock.buy(10, BigDecimal.valueOf(357));
+        assertEquals(new BigDecimal("44.625"), popStock.getPERatio());
+        popStock.sell(10, BigDecimal.valueOf(80));
+        assertEquals(new BigDecimal("10"), popStock.getPERatio());
+    }
+
+    @Test
+    public void whenBatchOfTradesIsDoneThenPERatioIsEvaluatedForItsLastTrade() {
+        popStock.buy(10, BigDecimal.valueOf(357));
+        assertEquals(new BigDecimal("44.625"), popStock.getPERatio());
+        Instant now = Instant.now();
+        popStock.tradeBatch(new TradeBatch().buy(1, BigDecimal.valueOf(16), now).sell(1, BigDecimal.valueOf(80), now.plusSeconds(1)));
+        assertEquals(new BigDecimal("10"), popStock.getPERatio());
+    }
+
+    @Test
+    public void whenArithmeticIsChangedThenPERatioIsEvaluatedAgain() {
+        popStock.buy(10, BigDecimal.valueOf(357));
+        assertEquals(new BigDecimal("44.625"), popStock.getPERatio());
+        popStock.setFixedPoint(FixedPoint.pennies());
+        assertEquals(new BigDecimal("45"), popStock.getPERatio());
+        popStock.setFixedPoint(null);
+        assertEquals(new BigDecimal("44.625"), popStock.getPERatio());
+    }
+
+    @Test
+    public void whenWindowsAreKeptThenEachCoversTradesOfItsLength() {
+        popStock.addWindow("1m", Duration.ofMinutes(1));
+        popStock.addWindow("5m", Duration.ofMinutes(5));
+        popStock.addWindow("15m", Duration.ofMinutes(15));
+        popStock.addWindow("1h", Duration.ofHours(1));
+        tradeOverLastHours();
+
+        List<WindowStatistics> windows = popStock.getWindows();
+        assertEquals(4, windows.size());
+        assertWindow(windows.get(0), "1m", 1, 5, "8");
+        assertWindow(windows.get(1), "5m", 2, 8, "9.5");
+        assertWindow(windows.get(2), "15m", 3, 10, "11.6");
+        assertWindow(windows.get(3), "1h", 4, 20, "8.3");
+        assertWindow(popStock.getWindow("15m"), "15m", 3, 10, "11.6");
+        assertEquals(Duration.ofHours(1), windows.get(3).getLength());
+    }
+
+    @Test
+    public void whenWindowIsAddedAfterTradesThenItCoversRetainedTrades() {
+        tradeOverLastHours();
+        popStock.addWindow("15m", Duration.ofMinutes(15));
+        assertWindow(popStock.getWindow("15m"), "15m", 3, 10, "11.6");
+        popStock.buy(10, BigDecimal.valueOf(4));
+        assertWindow(popStock.getWindow("15m"), "15m", 4, 20, "7.8");
+    }
+
+    @Test
+    public void whenTradesArePrunedThenWindowCoversOnlyRetainedTrades() {
+        popStock.addWindow("1h", Duration.ofHours(1));
+        popStock.setRetentionPolicy(RetentionPolicy.maxCount(2));
+        tradeOverLastHours();
+        assertWindow(popStock.getWindow("1h"), "1h", 2, 8, "9.5");
+    }
+
+    @Test
+    public void whenNoTradesHaveBeenDoneInWindowThenItIsEmpty() {
+        popStock.addWindow("1m", Duration.ofMinutes(1));
+        WindowStatistics window = popStock.getWindow("1m");
+        assertEquals(0, window.getNumberOfTrades());
+        assertEquals(0, window.getVolume());
+        assertNull(window.getVolumeWeightedPrice());
+    }
+
+    @Test
+    public void whenWindowIsRemovedThenItIsNotKeptAnymore() {
+        popStock.addWindow("1m", Duration.ofMinutes(1));
+        popStock.addWindow("5m", Duration.ofMinutes(5));
+        popStock.removeWindow("1m");
+        assertEquals(1, popStock.getWindows().size());
+        assertEquals("5m", popStock.getWindows().get(0).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addWindowShouldThrowExceptionWhenWindowIsAlreadyKept() {
+        popStock.addWindow("1m", Duration.ofMinutes(1));
+        popStock.addWindow("1m", Duration.ofMinutes(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addWindowShouldThrowExceptionWhenLengthIsNotPositive() {
+        popStock.addWindow("1m", Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getWindowShouldThrowExceptionWhenWindowIsNotKept() {
+        popStock.getWindow("1m");
+    }
+
+    private void tradeOverLastHours() {
+        Instant now = Instant.now();
+        popStock.tradeBatch(new TradeBatch()
+                .buy(1, BigDecimal.valueOf(100), now.minus(Duration.ofMinutes(90)))
+                .buy(10, BigDecimal.valueOf(5), now.minus(Duration.ofMinutes(30)))
+                .sell(2, BigDecimal.valueOf(20), now.minus(Duration.ofMinutes(10)))
+                .buy(3, BigDecimal.valueOf(12), now.minus(Duration.ofMinutes(2)))
+                .sell(5, BigDecimal.valueOf(8), now.minusSeconds(10)));
+    }
+
+    private static void assertWindow(WindowStatistics window, String name, long numberOfTrades, long volume, String volumeWeightedPrice) {
+        assertEquals(name, window.getName());
+        assertEquals(numberOfTrades, window.getNumberOfTrades());
+        assertEquals(volume, window.getVolume());
+        assertEquals(0, new BigDecimal(volumeWeightedPrice).compareTo(window.getVolumeWeightedPrice()));
+    }
+
+    @Test
+    public void whenClockIsSetThenTradesAreTimestampedAndWindowsEndByIt() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        popStock.setClock(clock);
+        popStock.buy(10, BigDecimal.valueOf(2));
+        clock.set(start.plus(Duration.ofMinutes(4)));
+        popStock.buy(10, BigDecimal.valueOf(4));
+        assertEquals(start, popStock.getTrades().get(0).getTimestamp());
+        assertEquals(0, new BigDecimal(3).compareTo(popStock.getVolumeWeightedStockPrice()));
+        clock.set(start.plus(Duration.ofMinutes(6)));
+        assertEquals(0, new BigDecimal(4).compareTo(popStock.getVolumeWeightedStockPrice()));
+        clock.set(start.plus(Duration.ofMinutes(10)));
+        assertNull(popStock.getVolumeWeightedStockPrice());
+    }
+
+    @Test
+    public void whenClockGoesBackThenTradesAreNotTimestampedBeforeTheLastTrade() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        popStock.setClock(clock);
+        popStock.buy(10, BigDecimal.valueOf(2));
+        clock.set(start.minusSeconds(1));
+        popStock.buy(10, BigDecimal.valueOf(4));
+        assertEquals(start, popStock.getLastTrade().getTimestamp());
+    }
+
+    @Test(timeout = 10_000)
+    public void whenTradeHoldsTheLockThenReadsDoNotWait() throws InterruptedException {
+        CountDownLatch archiving = new CountDownLatch(1);
+        CountDownLatch archived = new CountDownLatch(1);
+        popStock.setRetentionPolicy(RetentionPolicy.maxCount(1));
+        // archive is called with the lock held
+        popStock.setTradeArchive(trades -> {
+            archiving.countDown();
+            try {
+                archived.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        popStock.buy(QUANTITY, BigDecimal.ONE);
+        Thread writer = new Thread(() -> popStock.buy(QUANTITY, BigDecimal.TEN));
+        writer.start();
+        archiving.await();
+
+        assertEquals(BigDecimal.TEN, popStock.getLastTrade().getPrice());
+        assertNotNull(popStock.getVolumeWeightedStockPrice());
+        assertNotNull(popStock.getPERatio());
+        assertEquals(1, popStock.getTrades().size());
+        archived.countDown();
+        writer.join();
+    }
+
+    @Test
+    public void whenWindowIsTheSameThenLogVolumeWeightedStockPriceIsShared() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        popStock.setClock(clock);
+        long now = TradeStore.toEpochNanos(start);
+        assertTrue(Double.isNaN(popStock.getLogVolumeWeightedStockPrice(now)));
+        popStock.buy(10, BigDecimal.valueOf(2));
+        assertEquals(Math.log(2), popStock.getLogVolumeWeightedStockPrice(now), 1e-12);
+        popStock.buy(10, BigDecimal.valueOf(4));
+        assertEquals(Math.log(3), popStock.getLogVolumeWeightedStockPrice(now), 1e-12);
+        assertEquals(Math.log(3), popStock.getLogVolumeWeightedStockPrice(now + 1), 1e-12);
+        assertTrue(Double.isNaN(popStock.getLogVolumeWeightedStockPrice(TradeStore.toEpochNanos(start.plus(Duration.ofMinutes(6))))));
+    }
+
+    @Test
+    public void whenStatisticsOfIntervalAreTakenThenOnlyTradesInItAreCounted() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        popStock.setClock(clock);
+        for (int i = 0; i < 10; i++) {
+            clock.set(start.plusSeconds(i));
+            popStock.buy(i + 1, BigDecimal.valueOf(i + 1));
+        }
+        IntervalStatistics statistics = popStock.getStatistics(start.plusSeconds(2), start.plusSeconds(5));
+        assertEquals(3, statistics.getNumberOfTrades());
+        assertEquals(3 + 4 + 5, statistics.getVolume());
+        assertEquals(0, new BigDecimal(9 + 16 + 25).divide(new BigDecimal(12), MathContext.DECIMAL128).compareTo(statistics.getVolumeWeightedPrice()));
+        assertEquals(statistics.getVolumeWeightedPrice(), popStock.getVolumeWeightedStockPrice(start.plusSeconds(2), start.plusSeconds(5)));
+        assertEquals(start.plusSeconds(2), statistics.getFrom());
+
+        IntervalStatistics empty = popStock.getStatistics(start.plusMillis(1), start.plusMillis(999));
+        assertEquals(0, empty.getNumberOfTrades());
+        assertEquals(0, empty.getVolume());
+        assertNull(empty.getVolumeWeightedPrice());
+        assertEquals(10, popStock.getStatistics(Instant.EPOCH, start.plusSeconds(10)).getNumberOfTrades());
+    }
+
+    @Test
+    public void whenStatisticsOfIntervalsAreTakenThenTheyAddUpToTheRange() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        popStock.setClock(clock);
+        Random random = new Random(1);
+        for (int i = 0; i < 1_000; i++) {
+            clock.set(start.plusMillis(i * 60));
+            popStock.sell(1 + random.nextInt(100), BigDecimal.valueOf(1 + random.nextInt(10_000), 2));
+        }
+        List<IntervalStatistics> intervals = popStock.getStatistics(start, start.plusSeconds(61), Duration.ofSeconds(7));
+        assertEquals(9, intervals.size());
+        assertEquals(start.plusSeconds(61), intervals.get(8).getTo());
+        long trades = 0;
+        long volume = 0;
+        for (int i = 0; i < intervals.size(); i++) {
+            IntervalStatistics interval = intervals.get(i);
+            IntervalStatistics single = popStock.getStatistics(interval.getFrom(), interval.getTo());
+            assertEquals(single.getNumberOfTrades(), interval.getNumberOfTrades());
+            assertEquals(single.getVolumeWeightedPrice(), interval.getVolumeWeightedPrice());
+            if (i > 0) assertEquals(intervals.get(i - 1).getTo(), interval.getFrom());
+            trades += interval.getNumberOfTrades();
+            volume += interval.getVolume();
+        }
+        assertEquals(1_000, trades);
+        assertEquals(popStock.getStatistics(start, start.plusSeconds(61)).getVolume(), volume);
+    }
+
+    @Test
+    public void whenQueryTimestampIsOutOfRangeOfEpochNanosThenItBoundsAllTradesOrNone() {
+        Instant start = Instant.parse("2016-01-04T08:00:00Z");
+        ReplayClock clock = new ReplayClock(start);
+        popStock.setClock(clock);
+        for (int i = 0; i < 10; i++) {
+            clock.set(start.plusSeconds(i));
+            popStock.buy(i + 1, BigDecimal.valueOf(i + 1));
+        }
+        BigDecimal all = popStock.getVolumeWeightedStockPrice(Instant.EPOCH);
+        assertEquals(all, popStock.getVolumeWeightedStockPrice(Instant.MIN));
+        assertEquals(all, popStock.getVolumeWeightedStockPrice(Instant.parse("1000-01-01T00:00:00Z")));
+        assertNull(popStock.getVolumeWeightedStockPrice(Instant.MAX));
+        assertEquals(10, popStock.getStatistics(Instant.MIN, Instant.MAX).getNumberOfTrades());
+        assertEquals(10, popStock.getTrades(Instant.parse("1000-01-01T00:00:00Z"), Instant.MAX).size());
+        assertTrue(popStock.isRetainedSince(Instant.MIN));
+
+        popStock.setRetentionPolicy(RetentionPolicy.maxCount(1));
+        popStock.buy(1, BigDecimal.ONE);
+        assertFalse(popStock.isRetainedSince(Instant.MIN));
+        assertFalse(popStock.isRetainedSince(Instant.parse("1000-01-01T00:00:00Z")));
+        assertTrue(popStock.isRetainedSince(Instant.MAX));
+    }
+
+    @Test
+    public void whenRangeIsLongerThanLargestLongOfNanosThenItIsSplitIntoAllIntervals() {
+        popStock.buy(1, BigDecimal.ONE);
+        Duration century = Duration.ofDays(36_525);
+        List<IntervalStatistics> intervals = popStock.getStatistics(Instant.parse("1700-01-01T00:00:00Z"),
+                Instant.parse("2200-01-01T00:00:00Z"), century);
+        assertEquals(5, intervals.size());
+        assertEquals(Instant.parse("2200-01-01T00:00:00Z"), intervals.get(4).getTo());
+        long trades = 0;
+        for (IntervalStatistics interval : intervals) trades += interval.getNumberOfTrades();
+        assertEquals(1, trades);
+        assertEquals(6, popStock.getStatistics(Instant.MIN, Instant.MAX, century).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getStatisticsShouldThrowExceptionWhenFromIsAfterTo() {
+        popStock.getStatistics(Instant.EPOCH.plusSeconds(1), Instant.EPOCH);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getStatisticsShouldThrowExceptionWhenIntervalIsZero() {
+        popStock.getStatistics(Instant.EPOCH, Instant.EPOCH.plusSeconds(1), Duration.ZERO);
+    }
 }
@@ -0,0 +1,62 @@
+package com.gbce.stocks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TradeBatchTest {
+
+    private TradeBatch batch;
+
+    @Before
+    public void init() {
+        batch = new TradeBatch();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buyShouldThrowExceptionWhenQuantityIsZero() {
+        batch.buy(0, BigDecimal.ONE, Instant.now());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sellShouldThrowExceptionWhenPriceIsZero() {
+        batch.sell(1, BigDecimal.ZERO, Instant.now());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void buyShouldThrowExceptionWhenTimestampIsNull() {
+        batch.buy(1, BigDecimal.ONE, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sellShouldThrowExceptionWhenTimestampIsBeforeThePreviousTrade() {
+        Instant now = Instant.now();
+        batch.buy(1, BigDecimal.ONE, now).sell(1, BigDecimal.ONE, now.minusNanos(1));
+    }
+
+    @Test
+    public void whenTradeHasBeenRejectedThenTradesAddedBeforeAreKept() {
+        Instant now = Instant.now();
+        batch.buy(1, BigDecimal.ONE, now);
+        try {
+            batch.sell(1, new BigDecimal("0.000000001"), now);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, batch.size());
+    }
+
+    @Test
+    public void whenBatchHasBeenClearedThenItIsEmpty() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 100; i++) batch.buy(1, BigDecimal.ONE, now);
+        assertEquals(100, batch.size());
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+}
@@ -0,0 +1,197 @@
+package com.gbce.stocks;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+public class TradeCodecTest {
+
+    private static final Instant NOW = Instant.parse("2016-01-04T08:00:00.123456789Z");
+
+    @Test
+    public void whenTradeIsEncodedThenItIsDecodedEqual() {
+        Trade trade = new Trade(100, new BigDecimal("12.50"), NOW, Trade.TradeIndicator.SELL);
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.TRADE_SIZE);
+        TradeCodec.encode(trade, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        Trade decoded = TradeCodec.decode(buffer);
+        assertEquals(100, decoded.getQuantity());
+        assertEquals(new BigDecimal("12.50"), decoded.getPrice());
+        assertEquals(NOW, decoded.getTimestamp());
+        assertEquals(Trade.TradeIndicator.SELL, decoded.getIndicator());
+    }
+
+    @Test
+    public void whenBufferIsLittleEndianThenBytesAreTheSame() {
+        Trade trade = new Trade(7, new BigDecimal("0.00000001"), NOW, Trade.TradeIndicator.BUY);
+        ByteBuffer bigEndian = ByteBuffer.allocate(TradeCodec.TRADE_SIZE);
+        ByteBuffer littleEndian = ByteBuffer.allocateDirect(TradeCodec.TRADE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        TradeCodec.encode(trade, bigEndian);
+        TradeCodec.encode(trade, littleEndian);
+        bigEndian.flip();
+        littleEndian.flip();
+        assertEquals(bigEndian, littleEndian);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, littleEndian.order());
+        assertEquals(trade.getPrice(), TradeCodec.decode(littleEndian).getPrice());
+    }
+
+    @Test
+    public void whenBatchIsEncodedThenItIsDecodedEqual() {
+        TradeBatch batch = new TradeBatch()
+                .buy(1, new BigDecimal("1.5"), NOW)
+                .sell(2, new BigDecimal("2"), NOW.plusNanos(1))
+                .buy(3, new BigDecimal("3.12345678"), NOW.plusSeconds(1));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TradeCodec.batchSize("TEA", batch.size()));
+        TradeCodec.encode("TEA", batch, buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        TradeBatch decoded = new TradeBatch();
+        assertEquals("TEA", TradeCodec.decode(buffer, decoded));
+        Stock stock = StockFactory.getStock("TEA");
+        stock.tradeBatch(decoded);
+        List<Trade> trades = stock.getTrades();
+        assertEquals(3, trades.size());
+        assertEquals(new BigDecimal("1.5"), trades.get(0).getPrice());
+        assertEquals(Trade.TradeIndicator.SELL, trades.get(1).getIndicator());
+        assertEquals(NOW.plusNanos(1), trades.get(1).getTimestamp());
+        assertEquals(new BigDecimal("3.12345678"), trades.get(2).getPrice());
+        assertEquals(3, trades.get(2).getQuantity());
+    }
+
+    @Test
+    public void whenPriceScaleIsNegativeOrAboveFixedPointThenTradesAreDecodedEqual() {
+        BigDecimal[] prices = {new BigDecimal("1E+3"), new BigDecimal("10.2500000000")};
+        for (BigDecimal price : prices) {
+            ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.TRADE_SIZE);
+            TradeCodec.encode(new Trade(1, price, NOW, Trade.TradeIndicator.BUY), buffer);
+            buffer.flip();
+            assertEquals(price, TradeCodec.decode(buffer).getPrice());
+        }
+
+        TradeBatch batch = new TradeBatch().buy(1, prices[0], NOW).sell(2, prices[1], NOW);
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("TEA", batch.size()));
+        TradeCodec.encode("TEA", batch, buffer);
+        buffer.flip();
+        TradeBatch decoded = new TradeBatch();
+        TradeCodec.decode(buffer, decoded);
+        Stock stock = StockFactory.getStock("TEA");
+        stock.tradeBatch(decoded);
+        assertEquals(prices[0], stock.getTrades().get(0).getPrice());
+        assertEquals(prices[1], stock.getTrades().get(1).getPrice());
+
+        buffer = ByteBuffer.allocate(TradeCodec.batchSize("TEA", 2));
+        TradeCodec.encode(stock, 0, buffer);
+        buffer.flip();
+        decoded = new TradeBatch();
+        TradeCodec.decode(buffer, decoded);
+        Stock copy = StockFactory.getStock("TEA");
+        copy.tradeBatch(decoded);
+        assertEquals(prices[0], copy.getTrades().get(0).getPrice());
+        assertEquals(prices[1], copy.getTrades().get(1).getPrice());
+    }
+
+    @Test
+    public void whenStockTradesDoNotFitThenTheyAreEncodedInBatches() {
+        Stock stock = StockFactory.getStock("ALE");
+        for (int i = 1; i <= 10; i++) stock.buy(i, BigDecimal.valueOf(i));
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("ALE", 4));
+        Stock copy = StockFactory.getStock("ALE");
+        long sequence = 0;
+        int batches = 0;
+        while (sequence < 10) {
+            buffer.clear();
+            sequence = TradeCodec.encode(stock, sequence, buffer);
+            buffer.flip();
+            TradeBatch batch = new TradeBatch();
+            TradeCodec.decode(buffer, batch);
+            copy.tradeBatch(batch);
+            batches++;
+        }
+        assertEquals(3, batches);
+        assertEquals(stock.getTrades().size(), copy.getTrades().size());
+        assertEquals(stock.getVolumeWeightedStockPrice(), copy.getVolumeWeightedStockPrice());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void encodeShouldThrowExceptionWhenBatchDoesNotFit() {
+        TradeBatch batch = new TradeBatch().buy(1, BigDecimal.ONE, NOW).buy(1, BigDecimal.ONE, NOW);
+        TradeCodec.encode("TEA", batch, ByteBuffer.allocate(TradeCodec.batchSize("TEA", 1)));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void decodeShouldThrowExceptionWhenBatchIsTruncated() {
+        TradeBatch batch = new TradeBatch().buy(1, BigDecimal.ONE, NOW);
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("TEA", 1));
+        TradeCodec.encode("TEA", batch, buffer);
+        buffer.flip().limit(buffer.limit() - 1);
+        TradeCodec.decode(buffer, new TradeBatch());
+    }
+
+    @Test
+    public void whenBatchIsTruncatedThenItIsDecodedOnceTheRestHasBeenRead() {
+        TradeBatch batch = new TradeBatch().buy(1, BigDecimal.ONE, NOW).sell(2, BigDecimal.TEN, NOW);
+        ByteBuffer encoded = ByteBuffer.allocate(TradeCodec.batchSize("TEA", 2));
+        TradeCodec.encode("TEA", batch, encoded);
+        encoded.flip();
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.limit());
+        for (int received : new int[] {5, TradeCodec.batchSize("TEA", 1)}) {
+            buffer.clear();
+            buffer.put(encoded.array(), 0, received).flip();
+            try {
+                TradeCodec.decode(buffer, new TradeBatch());
+                fail();
+            } catch (BufferUnderflowException e) {
+                assertEquals(0, buffer.position());
+            }
+        }
+        buffer.clear();
+        buffer.put(encoded.array()).flip();
+        TradeBatch decoded = new TradeBatch();
+        assertEquals("TEA", TradeCodec.decode(buffer, decoded));
+        assertEquals(2, decoded.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchSizeShouldThrowExceptionWhenBatchIsLargerThanBuffer() {
+        TradeCodec.batchSize("TEA", Integer.MAX_VALUE / TradeCodec.TRADE_SIZE + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeShouldThrowExceptionWhenBytesAreNotBatch() {
+        TradeCodec.decode(ByteBuffer.allocate(64), new TradeBatch());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeShouldThrowExceptionWhenQuantityIsZero() {
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.TRADE_SIZE);
+        TradeCodec.encode(new Trade(1, BigDecimal.ONE, NOW, Trade.TradeIndicator.BUY), buffer);
+        buffer.putLong(8, 0).flip();
+        TradeCodec.decode(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeShouldThrowExceptionWhenIndicatorIsUnknown() {
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.TRADE_SIZE);
+        TradeCodec.encode(new Trade(1, BigDecimal.ONE, NOW, Trade.TradeIndicator.BUY), buffer);
+        buffer.put(TradeCodec.TRADE_SIZE - 1, (byte) 2).flip();
+        TradeCodec.decode(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeShouldThrowExceptionWhenPriceHasMoreDecimalPlacesThanScale() {
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.TRADE_SIZE);
+        TradeCodec.encode(new Trade(1, new BigDecimal("1.5"), NOW, Trade.TradeIndicator.BUY), buffer);
+        buffer.put(24, (byte) 0).flip();
+        TradeCodec.decode(buffer);
+    }
+}
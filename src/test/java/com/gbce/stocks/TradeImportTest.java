@@ -0,0 +1,245 @@
+package com.gbce.stocks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class TradeImportTest {
+
+    private static final Instant OPEN = Instant.parse("2016-01-04T08:00:00Z");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Stock popStock;
+
+    private Stock ginStock;
+
+    private TradeImport tradeImport;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void init() {
+        popStock = StockFactory.getStock("POP");
+        ginStock = StockFactory.getStock("GIN");
+        tradeImport = new TradeImport(Arrays.asList(popStock, ginStock));
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void shutDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void whenCsvIsImportedThenTradesAreDoneAtTheirTimes() throws IOException {
+        Path file = write(
+                "2016-01-04T08:00:00.000000001Z,POP,BUY,100,10.25",
+                "",
+                "2016-01-04T08:00:01Z,GIN,SELL,5,99.5\r",
+                "2016-01-04T08:07:00Z,POP,SELL,10,1.1E+1");
+
+        ImportProgress progress = tradeImport.importCsv(file);
+
+        assertEquals(3, progress.getTradesParsed());
+        assertEquals(3, progress.getTradesLoaded());
+        assertEquals(Files.size(file), progress.getBytesParsed());
+        assertEquals(2, popStock.getTrades().size());
+        assertEquals(Instant.parse("2016-01-04T08:00:00.000000001Z"), popStock.getTrades().get(0).getTimestamp());
+        assertEquals(new BigDecimal("10.25"), popStock.getTrades().get(0).getPrice());
+        assertEquals(new BigDecimal("1.1E+1"), popStock.getLastTrade().getPrice());
+        assertEquals(Trade.TradeIndicator.SELL, ginStock.getLastTrade().getIndicator());
+        assertEquals(new BigDecimal("99.5"), ginStock.getLastTrade().getPrice());
+    }
+
+    @Test
+    public void whenCsvIsSplitIntoChunksThenTradesAreTheSameAsReplayed() throws IOException {
+        List<String> lines = lines(5_000, true);
+        Path file = write(lines.toArray(new String[0]));
+        tradeImport.setParallelism(pool, 1_000);
+        List<ImportProgress> reported = new ArrayList<>();
+
+        ImportProgress progress = tradeImport.importCsv(file, reported::add);
+
+        Stock replayedPop = StockFactory.getStock("POP");
+        Stock replayedGin = StockFactory.getStock("GIN");
+        ReplayClock clock = new ReplayClock(OPEN);
+        replayedPop.setClock(clock);
+        replayedGin.setClock(clock);
+        new TradeReplay(Arrays.asList(replayedPop, replayedGin), clock).replay(file);
+        assertEquals(5_000, progress.getTradesLoaded());
+        assertTrades(replayedPop, popStock);
+        assertTrades(replayedGin, ginStock);
+        assertTrue(reported.size() > 2);
+        assertEquals(5_000, reported.get(reported.size() - 1).getTradesLoaded());
+    }
+
+    @Test
+    public void whenCsvIsNotInOrderThenTradesAreDoneInOrderOfTime() throws IOException {
+        List<String> lines = lines(2_000, false);
+        tradeImport.setParallelism(ForkJoinPool.commonPool(), 4_096);
+
+        tradeImport.importCsv(write(lines.toArray(new String[0])));
+
+        assertEquals(2_000, popStock.getTrades().size() + ginStock.getTrades().size());
+        for (Stock stock : Arrays.asList(popStock, ginStock)) {
+            List<Trade> trades = stock.getTrades();
+            for (int i = 1; i < trades.size(); i++) {
+                assertTrue(!trades.get(i).getTimestamp().isBefore(trades.get(i - 1).getTimestamp()));
+            }
+        }
+    }
+
+    @Test
+    public void whenLineCannotBeParsedThenNoTradesAreImported() throws IOException {
+        Path file = write(
+                "2016-01-04T08:00:00Z,POP,BUY,100,10.25",
+                "2016-01-04T08:00:01Z,POP,BUY,0,10.25");
+        try {
+            tradeImport.importCsv(file);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("byte 39"));
+        }
+        assertTrue(popStock.getTrades().isEmpty());
+    }
+
+    @Test
+    public void whenStockHasBeenTradedAfterFirstTradeOfFileThenNoTradesAreImported() throws IOException {
+        ReplayClock clock = new ReplayClock(OPEN.plusSeconds(60));
+        popStock.setClock(clock);
+        popStock.buy(1, BigDecimal.ONE);
+        Path file = write(
+                "2016-01-04T08:00:00Z,GIN,BUY,100,10.25",
+                "2016-01-04T08:01:00Z,POP,BUY,100,10.25",
+                "2016-01-04T08:00:30Z,POP,SELL,100,10.25");
+        try {
+            tradeImport.importCsv(file);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("POP"));
+        }
+        assertEquals(1, popStock.getTrades().size());
+        assertTrue(ginStock.getTrades().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importCsvShouldThrowExceptionWhenStockIsNotImported() throws IOException {
+        tradeImport.importCsv(write("2016-01-04T08:00:00Z,TEA,BUY,100,10.25"));
+    }
+
+    @Test
+    public void whenBinaryFileIsImportedThenTradesAreTheSameAsEncoded() throws IOException {
+        Stock recorded = StockFactory.getStock("POP");
+        ReplayClock clock = new ReplayClock(OPEN);
+        recorded.setClock(clock);
+        Random random = new Random(1);
+        for (int i = 0; i < 1_000; i++) {
+            clock.set(OPEN.plusMillis(i));
+            recorded.sell(1 + random.nextInt(100), BigDecimal.valueOf(1 + random.nextInt(10_000), random.nextInt(4)));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("POP", 1_000) * 10);
+        long sequence = 0;
+        while (sequence < 1_000) {
+            // batches of up to 64 trades
+            ByteBuffer batch = buffer.slice();
+            batch.limit(TradeCodec.batchSize("POP", 64));
+            sequence = TradeCodec.encode(recorded, sequence, batch);
+            buffer.position(buffer.position() + batch.position());
+        }
+        buffer.flip();
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.copyOf(buffer.array(), buffer.limit()));
+        tradeImport.setParallelism(pool, 4_096);
+
+        ImportProgress progress = tradeImport.importBinary(file);
+
+        assertEquals(1_000, progress.getTradesLoaded());
+        assertTrades(recorded, popStock);
+    }
+
+    @Test
+    public void whenPriceScaleIsNegativeOrAboveFixedPointThenBinaryFileIsImported() throws IOException {
+        Stock recorded = StockFactory.getStock("POP");
+        recorded.setClock(new ReplayClock(OPEN));
+        recorded.buy(1, new BigDecimal("1E+3"));
+        recorded.sell(2, new BigDecimal("10.2500000000"));
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("POP", 2));
+        TradeCodec.encode(recorded, 0, buffer);
+        Path file = folder.newFile().toPath();
+        Files.write(file, buffer.array());
+
+        tradeImport.importBinary(file);
+
+        assertTrades(recorded, popStock);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importBinaryShouldThrowExceptionWhenBatchIsTruncated() throws IOException {
+        TradeBatch batch = new TradeBatch().buy(1, BigDecimal.ONE, OPEN);
+        ByteBuffer buffer = ByteBuffer.allocate(TradeCodec.batchSize("POP", 1));
+        TradeCodec.encode("POP", batch, buffer);
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.copyOf(buffer.array(), buffer.limit() - 1));
+        tradeImport.importBinary(file);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setParallelismShouldThrowExceptionWhenChunkSizeIsZero() {
+        tradeImport.setParallelism(ForkJoinPool.commonPool(), 0);
+    }
+
+    private static void assertTrades(Stock expected, Stock actual) {
+        List<Trade> expectedTrades = expected.getTrades();
+        List<Trade> actualTrades = actual.getTrades();
+        assertEquals(expectedTrades.size(), actualTrades.size());
+        for (int i = 0; i < expectedTrades.size(); i++) {
+            assertEquals(expectedTrades.get(i).getTimestamp(), actualTrades.get(i).getTimestamp());
+            assertEquals(expectedTrades.get(i).getQuantity(), actualTrades.get(i).getQuantity());
+            assertEquals(expectedTrades.get(i).getPrice(), actualTrades.get(i).getPrice());
+            assertEquals(expectedTrades.get(i).getIndicator(), actualTrades.get(i).getIndicator());
+        }
+    }
+
+    /**
+     * @param ordered whether lines are in the order of time, otherwise they are shuffled
+     */
+    private static List<String> lines(int count, boolean ordered) {
+        Random random = new Random(1);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Trade trade = new Trade(1 + random.nextInt(100), BigDecimal.valueOf(1 + random.nextInt(10_000), random.nextInt(4)),
+                    OPEN.plusNanos(i * 1_000_000L + random.nextInt(3)), random.nextBoolean() ? Trade.TradeIndicator.BUY : Trade.TradeIndicator.SELL);
+            lines.add(TradeReplay.format(random.nextBoolean() ? "POP" : "GIN", trade));
+        }
+        if (!ordered) Collections.shuffle(lines, random);
+        return lines;
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+}
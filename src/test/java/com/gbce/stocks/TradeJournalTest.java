@@ -0,0 +1,139 @@
+package com.gbce.stocks;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TradeJournalTest {
+
+    // header and 3 records
+    private static final int REGION_SIZE = 4 * TradeJournal.RECORD_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenJournalHasBeenReopenedThenAppendedTradesAreReplayed() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perTrade(), REGION_SIZE)) {
+            assertTrue(journal.isEmpty());
+            for (int i = 0; i < 10; i++) append(journal, i);
+        }
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch(), REGION_SIZE)) {
+            assertEquals(10, journal.size());
+            append(journal, 10);
+            journal.endBatch();
+            List<long[]> trades = replay(journal);
+            assertEquals(11, trades.size());
+            for (int i = 0; i < trades.size(); i++) {
+                assertEquals(i, trades.get(i)[0]);
+                assertEquals(i + 1, trades.get(i)[1]);
+                assertEquals(i * 100, trades.get(i)[2]);
+                assertEquals(i % 2, trades.get(i)[3]);
+            }
+        }
+    }
+
+    @Test
+    public void whenRecordHasBeenDamagedBeforeItHasBeenForcedThenJournalEndsBeforeIt() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (TradeJournal crashed = TradeJournal.open(path, SyncPolicy.periodic(Duration.ofDays(1)), REGION_SIZE)) {
+            for (int i = 0; i < 5; i++) append(crashed, i);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            // as if the process has crashed before the records have been forced
+            file.seek(16);
+            file.writeLong(0);
+            // price of the fourth trade
+            file.seek(4 * TradeJournal.RECORD_SIZE + 16);
+            file.writeLong(-1);
+        }
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch(), REGION_SIZE)) {
+            assertEquals(3, journal.size());
+            append(journal, 3);
+            journal.endBatch();
+            assertEquals(4, replay(journal).size());
+        }
+        // records after the damaged one are not scanned once it has been appended again
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch(), REGION_SIZE)) {
+            List<long[]> trades = replay(journal);
+            assertEquals(4, trades.size());
+            for (int i = 0; i < trades.size(); i++) assertEquals(i, trades.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void whenJournalHasBeenForcedThenItIsNotScannedAgainOnOpen() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perTrade(), REGION_SIZE)) {
+            for (int i = 0; i < 5; i++) append(journal, i);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            // damaged after it has been forced, so it is not a torn record
+            file.seek(2 * TradeJournal.RECORD_SIZE + 16);
+            file.writeLong(-1);
+        }
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perTrade(), REGION_SIZE)) {
+            assertEquals(5, journal.size());
+        }
+    }
+
+    @Test
+    public void whenTradesHaveBeenReservedThenFileIsExtendedBeforeTheyAreAppended() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch(), REGION_SIZE)) {
+            append(journal, 0);
+            journal.reserve(10);
+            assertEquals(12 * TradeJournal.RECORD_SIZE, Files.size(path));
+            assertEquals(1, journal.size());
+            for (int i = 1; i < 11; i++) append(journal, i);
+            journal.endBatch();
+        }
+        try (TradeJournal journal = TradeJournal.open(path, SyncPolicy.perBatch(), REGION_SIZE)) {
+            List<long[]> trades = replay(journal);
+            assertEquals(11, trades.size());
+            for (int i = 0; i < trades.size(); i++) assertEquals(i, trades.get(i)[0]);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void openShouldThrowExceptionWhenFileIsNotJournal() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        Files.write(path, "not a journal".getBytes());
+        TradeJournal.open(path, SyncPolicy.perBatch());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void appendShouldThrowExceptionWhenJournalIsClosed() throws IOException {
+        TradeJournal journal = TradeJournal.open(folder.getRoot().toPath().resolve("journal"), SyncPolicy.periodic(Duration.ofMillis(1)));
+        journal.close();
+        append(journal, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void periodicShouldThrowExceptionWhenIntervalIsZero() {
+        SyncPolicy.periodic(Duration.ZERO);
+    }
+
+    private static void append(TradeJournal journal, int i) {
+        journal.append(i, i + 1, i * 100, (byte) 2, i % 2 == 0 ? Trade.TradeIndicator.BUY : Trade.TradeIndicator.SELL);
+    }
+
+    private static List<long[]> replay(TradeJournal journal) {
+        List<long[]> trades = new ArrayList<>();
+        journal.replay((timestamp, quantity, price, scale, indicator) ->
+                trades.add(new long[]{timestamp, quantity, price, indicator.ordinal()}));
+        return trades;
+    }
+}
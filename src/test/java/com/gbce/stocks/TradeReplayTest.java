@@ -0,0 +1,139 @@
+package com.gbce.stocks;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class TradeReplayTest {
+
+    private static final Instant OPEN = Instant.parse("2016-01-04T08:00:00Z");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReplayClock clock;
+
+    private Stock popStock;
+
+    private Stock ginStock;
+
+    private StockIndex index;
+
+    @Before
+    public void init() {
+        clock = new ReplayClock(OPEN);
+        popStock = StockFactory.getStock("POP");
+        ginStock = StockFactory.getStock("GIN");
+        index = index(clock, popStock, ginStock);
+    }
+
+    @Test
+    public void whenRecordingIsReplayedThenTradesAreDoneAtRecordedTimes() throws IOException {
+        Path recording = write(
+                "2016-01-04T08:00:00.000000001Z,POP,BUY,100,10.25",
+                "",
+                "2016-01-04T08:00:01Z,GIN,SELL,5,99.5",
+                "2016-01-04T08:07:00Z,POP,SELL,10,11");
+
+        long count = new TradeReplay(Arrays.asList(popStock, ginStock), clock).replay(recording);
+
+        assertEquals(3, count);
+        assertEquals(2, popStock.getTrades().size());
+        assertEquals(Instant.parse("2016-01-04T08:00:00.000000001Z"), popStock.getTrades().get(0).getTimestamp());
+        assertEquals(Trade.TradeIndicator.SELL, ginStock.getLastTrade().getIndicator());
+        assertEquals(new BigDecimal("99.5"), ginStock.getLastTrade().getPrice());
+        // the first trade is out of the window as of the last recorded trade, not the wall clock
+        assertEquals(0, new BigDecimal(11).compareTo(popStock.getVolumeWeightedStockPrice()));
+    }
+
+    @Test
+    public void whenRecordedTradesAreReplayedThenIndexValuesAreReproduced() throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<Double> recordedValues = new ArrayList<>();
+        Random random = new Random(1);
+        Instant time = OPEN;
+        for (int i = 0; i < 1_000; i++) {
+            time = time.plusMillis(random.nextInt(5_000));
+            clock.set(time);
+            Stock stock = random.nextBoolean() ? popStock : ginStock;
+            stock.buy(1 + random.nextInt(100), BigDecimal.valueOf(1_000 + random.nextInt(1_000), 2));
+            lines.add(TradeReplay.format(stock.getStockSymbol(), stock.getLastTrade()));
+            recordedValues.add(index.calculate());
+        }
+
+        ReplayClock replayClock = new ReplayClock(Instant.EPOCH);
+        Stock replayedPop = StockFactory.getStock("POP");
+        Stock replayedGin = StockFactory.getStock("GIN");
+        StockIndex replayedIndex = index(replayClock, replayedPop, replayedGin);
+        List<Double> replayedValues = new ArrayList<>();
+        new TradeReplay(Arrays.asList(replayedPop, replayedGin), replayClock)
+                .replay(write(lines.toArray(new String[0])), stock -> replayedValues.add(replayedIndex.calculate()));
+
+        assertEquals(recordedValues, replayedValues);
+        assertEquals(popStock.getVolumeWeightedStockPrice(), replayedPop.getVolumeWeightedStockPrice());
+    }
+
+    @Test
+    public void timestampsAreParsedAsInstants() {
+        for (String timestamp : Arrays.asList("2016-01-04T08:00:00Z", "2016-01-04T08:00:00.1Z", "2016-02-29T23:59:59.123456789Z",
+                "1969-12-31T23:59:59.999Z", "+12016-01-04T08:00:00Z")) {
+            assertEquals(Instant.parse(timestamp), TradeReplay.parseTimestamp(timestamp + ",POP", timestamp.length()));
+        }
+    }
+
+    @Test(expected = DateTimeException.class)
+    public void parseTimestampShouldThrowExceptionWhenDateIsInvalid() {
+        TradeReplay.parseTimestamp("2015-02-29T08:00:00Z", 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replayShouldThrowExceptionWhenStockIsNotReplayed() throws IOException {
+        new TradeReplay(Arrays.asList(popStock), clock).replay(write("2016-01-04T08:00:00Z,GIN,BUY,1,1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replayShouldThrowExceptionWhenLineCannotBeParsed() throws IOException {
+        new TradeReplay(Arrays.asList(popStock), clock).replay(write("2016-01-04T08:00:00Z,POP,HOLD,1,1"));
+    }
+
+    @Test
+    public void whenTradesAreOutOfOrderThenPrecedingTradesAreDone() throws IOException {
+        Path recording = write("2016-01-04T08:00:01Z,POP,BUY,1,1", "2016-01-04T08:00:00Z,POP,BUY,1,1");
+        try {
+            new TradeReplay(Arrays.asList(popStock), clock).replay(recording);
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, popStock.getTrades().size());
+            return;
+        }
+        throw new AssertionError("Out of order trade has been replayed");
+    }
+
+    private static StockIndex index(ReplayClock clock, Stock... stocks) {
+        for (Stock stock : stocks) stock.setClock(clock);
+        StockIndex index = new StockIndex("GBCE", new HashSet<>(Arrays.asList(stocks)));
+        index.setClock(clock);
+        return index;
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path recording = folder.newFile().toPath();
+        Files.write(recording, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return recording;
+    }
+}
@@ -0,0 +1,174 @@
+package com.gbce.stocks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.time.Instant;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TradeStoreTest {
+
+    private TradeStore store;
+
+    @Before
+    public void init() {
+        store = new TradeStore();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toFixedPointShouldThrowExceptionWhenPriceHasTooManyDecimalPlaces() {
+        TradeStore.toFixedPoint(new BigDecimal("0.000000001"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toFixedPointShouldThrowExceptionWhenPriceIsTooLarge() {
+        TradeStore.toFixedPoint(new BigDecimal("100000000000"));
+    }
+
+    @Test
+    public void whenTimestampHasBeenConvertedToEpochNanosThenItIsConvertedBackToTheSameTimestamp() {
+        Instant instant = Instant.now();
+        assertEquals(instant, TradeStore.toInstant(TradeStore.toEpochNanos(instant)));
+    }
+
+    @Test
+    public void whenTradeHasBeenAddedThenTradeIsCreatedWithTheSameData() {
+        BigDecimal price = new BigDecimal("12.50");
+        Instant timestamp = Instant.now();
+        store.add(TradeStore.toEpochNanos(timestamp), 7, TradeStore.toFixedPoint(price), TradeStore.toScale(price), Trade.TradeIndicator.SELL);
+        Trade trade = store.trade(0);
+        assertEquals(7, trade.getQuantity());
+        assertEquals(price, trade.getPrice());
+        assertEquals(timestamp, trade.getTimestamp());
+        assertEquals(Trade.TradeIndicator.SELL, trade.getIndicator());
+    }
+
+    @Test
+    public void whenTradesHaveBeenAddedAndRemovedAcrossSegmentsThenTradesKeepTheirSequenceNumbersAndData() {
+        for (int i = 0; i < 100; i++) add(i);
+        for (int i = 0; i < 90; i++) store.removeFirst();
+        for (int i = 100; i < 5000; i++) add(i);
+        for (int i = 90; i < 2500; i++) store.removeFirst();
+
+        TradeStore.View view = store.view();
+        assertEquals(2500, view.first());
+        assertEquals(5000, view.next());
+        for (long sequence = view.first(); sequence < view.next(); sequence++) {
+            Trade trade = view.trade(sequence);
+            assertEquals(sequence + 1, trade.getQuantity());
+            assertEquals(sequence % 3 == 0 ? Trade.TradeIndicator.SELL : Trade.TradeIndicator.BUY, trade.getIndicator());
+        }
+    }
+
+    private void add(int i) {
+        add(store, i);
+    }
+
+    private static void add(TradeStore store, int i) {
+        store.add(i, i + 1, TradeStore.toFixedPoint(BigDecimal.ONE), (byte) 0, i % 3 == 0 ? Trade.TradeIndicator.SELL : Trade.TradeIndicator.BUY);
+    }
+
+    @Test
+    public void whenAllTradesHaveBeenRemovedThenTradesCanBeAddedAgain() {
+        for (int i = 0; i < 2048; i++) add(i);
+        for (int i = 0; i < 2048; i++) store.removeFirst();
+        add(2048);
+        assertEquals(1, store.size());
+        assertEquals(2049, store.view().trade(2048).getQuantity());
+    }
+
+    @Test
+    public void whenViewHasBeenTakenThenLaterChangesDoNotAffectIt() {
+        for (int i = 0; i < 10; i++) add(i);
+        TradeStore.View view = store.view();
+        for (int i = 10; i < 3000; i++) add(i);
+        for (int i = 0; i < 2000; i++) store.removeFirst();
+        assertEquals(10, view.next() - view.first());
+        assertEquals(1, view.trade(0).getQuantity());
+    }
+
+    @Test
+    public void whenRangeOfTradesHasBeenSummedThenSumsAreEqualToSumsOfTradesInTheRange() {
+        for (int i = 0; i < 3000; i++) {
+            store.add(i, i + 1, i * 3 + 1, (byte) 0, Trade.TradeIndicator.BUY);
+        }
+        WideSum notional = new WideSum();
+        long quantity = store.view().sum(1000, 2500, notional);
+
+        long expectedQuantity = 0;
+        long expectedNotional = 0;
+        for (int i = 1000; i < 2500; i++) {
+            expectedQuantity += i + 1;
+            expectedNotional += (long) (i + 1) * (i * 3 + 1);
+        }
+        assertEquals(expectedQuantity, quantity);
+        assertEquals(BigInteger.valueOf(expectedNotional), WideSum.toBigInteger(notional.high(), notional.low()));
+        assertEquals(0, store.view().sum(10, 10, notional));
+        assertTrue(notional.isZero());
+    }
+
+    @Test
+    public void whenTradesHaveBeenAddedThenCeilingFindsTheOldestTradeAtOrAfterTimestamp() {
+        for (int i = 0; i < 3000; i++) store.add(i / 2 * 10, 1, TradeStore.toFixedPoint(BigDecimal.ONE), (byte) 0, Trade.TradeIndicator.BUY);
+        for (int i = 0; i < 1000; i++) store.removeFirst();
+
+        TradeStore.View view = store.view();
+        assertEquals(1000, view.ceiling(0));
+        assertEquals(1000, view.ceiling(5000));
+        assertEquals(2000, view.ceiling(10000));
+        assertEquals(2002, view.ceiling(10001));
+        assertEquals(2998, view.ceiling(14990));
+        assertEquals(3000, view.ceiling(14991));
+    }
+
+    @Test
+    public void whenTradesHaveBeenRestoredThenTheyHaveTheSameDataAndSumsAsTheOriginalOnes() {
+        for (int i = 0; i < 3000; i++) add(i);
+        for (int i = 0; i < 500; i++) store.removeFirst();
+        TradeStore.View view = store.view();
+        int count = (int) (view.next() - view.first());
+        LongBuffer timestamps = LongBuffer.allocate(count);
+        LongBuffer quantities = LongBuffer.allocate(count);
+        LongBuffer prices = LongBuffer.allocate(count);
+        ByteBuffer scales = ByteBuffer.allocate(count);
+        ByteBuffer indicators = ByteBuffer.allocate(count);
+        LongBuffer cumulativeQuantities = LongBuffer.allocate(count);
+        LongBuffer highs = LongBuffer.allocate(count);
+        LongBuffer lows = LongBuffer.allocate(count);
+        for (long sequence = view.first(); sequence < view.next(); sequence++) {
+            timestamps.put(view.timestamp(sequence));
+            quantities.put(view.quantity(sequence));
+            prices.put(view.price(sequence));
+            scales.put(view.scale(sequence));
+            indicators.put((byte) view.indicator(sequence).ordinal());
+            cumulativeQuantities.put(view.cumulativeQuantity(sequence));
+            highs.put(view.cumulativeNotionalHigh(sequence));
+            lows.put(view.cumulativeNotionalLow(sequence));
+        }
+        TradeStore restored = new TradeStore();
+        restored.restore(view.first(), count, (LongBuffer) timestamps.flip(), (LongBuffer) quantities.flip(), (LongBuffer) prices.flip(),
+                (ByteBuffer) scales.flip(), (ByteBuffer) indicators.flip(), (LongBuffer) cumulativeQuantities.flip(),
+                (LongBuffer) highs.flip(), (LongBuffer) lows.flip());
+        add(restored, 3000);
+        add(3000);
+
+        view = store.view();
+        TradeStore.View restoredView = restored.view();
+        assertEquals(view.first(), restoredView.first());
+        assertEquals(view.next(), restoredView.next());
+        for (long sequence = view.first(); sequence < view.next(); sequence++) {
+            assertEquals(view.timestamp(sequence), restoredView.timestamp(sequence));
+            assertEquals(view.indicator(sequence), restoredView.indicator(sequence));
+        }
+        WideSum notional = new WideSum();
+        WideSum restoredNotional = new WideSum();
+        assertEquals(view.sum(700, 3001, notional), restoredView.sum(700, 3001, restoredNotional));
+        assertEquals(notional.low(), restoredNotional.low());
+    }
+}
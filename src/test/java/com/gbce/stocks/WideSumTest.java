@@ -0,0 +1,53 @@
+package com.gbce.stocks;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class WideSumTest {
+
+    @Test
+    public void whenProductsHaveBeenAddedAndSubtractedThenSumIsEqualToTheExactSum() {
+        Random random = new Random(1);
+        WideSum sum = new WideSum();
+        BigInteger expected = BigInteger.ZERO;
+
+        for (int i = 0; i < 10_000; i++) {
+            long x = random.nextLong() >>> 14;
+            long y = random.nextLong() >>> 24;
+            if (random.nextBoolean()) {
+                sum.addProduct(x, y);
+                expected = expected.add(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)));
+            } else {
+                sum.subtractProduct(x, y);
+                expected = expected.subtract(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)));
+            }
+        }
+        assertEquals(expected, WideSum.toBigInteger(sum.high(), sum.low()));
+    }
+
+    @Test
+    public void whenValuesHaveBeenMultipliedThenHighBitsOfTheProductAreEvaluatedCorrectly() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < 10_000; i++) {
+            long x = random.nextLong();
+            long y = random.nextLong();
+            assertEquals(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)).shiftRight(64).longValue(), WideSum.multiplyHigh(x, y));
+        }
+    }
+
+    @Test
+    public void whenAllProductsHaveBeenSubtractedThenSumIsZero() {
+        WideSum sum = new WideSum();
+        sum.addProduct(Long.MAX_VALUE, Long.MAX_VALUE);
+        sum.addProduct(3, 5);
+        sum.subtractProduct(Long.MAX_VALUE, Long.MAX_VALUE);
+        sum.subtractProduct(3, 5);
+        assertTrue(sum.isZero());
+    }
+}